@@ -0,0 +1,102 @@
+package com.example.elasticsearchreactivedemo.controller;
+
+import co.elastic.clients.elasticsearch.core.GetRequest;
+import com.example.elasticsearchreactivedemo.ElasticsearchReactiveDemoApplication;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.support.BenchmarkProducts;
+import com.example.elasticsearchreactivedemo.support.ElasticsearchStubServer;
+import com.example.elasticsearchreactivedemo.support.InMemoryElasticsearchTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Controller -> service -> executor -> client, against the in-memory transport, including JSON encoding of the
+// response body. Caches are off unless enabled by the parameter, so every call goes through the client.
+// Searches are sent as raw requests through the low-level RestClient, which talks to a local stub server holding
+// the same 20 products the canned search response has.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductControllerBenchmark {
+
+    @Param({"async", "blocking"})
+    private String clientMode;
+
+    @Param({"false", "true"})
+    private boolean caches;
+
+    private ElasticsearchStubServer stub;
+    private ConfigurableApplicationContext context;
+    private ProductController controller;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = ElasticsearchStubServer.start(Duration.ZERO);
+        ObjectMapper sourceMapper = new ObjectMapper();
+        for (ProductDocument product : BenchmarkProducts.products(20)) {
+            stub.putDocument(product.id(), sourceMapper.writeValueAsString(product));
+        }
+        byte[] searchResponse = BenchmarkProducts.searchResponse(20);
+        InMemoryElasticsearchTransport transport = new InMemoryElasticsearchTransport()
+            .respond("es/search", request -> searchResponse)
+            .respond("es/get", request -> BenchmarkProducts.getResponse(((GetRequest) request).id()));
+
+        context = new SpringApplicationBuilder(ElasticsearchReactiveDemoApplication.class)
+            .web(WebApplicationType.NONE)
+            .initializers(ctx -> ((GenericApplicationContext) ctx).registerBean(
+                InMemoryElasticsearchTransport.class, () -> transport, bd -> bd.setPrimary(true)))
+            .run( // command-line arguments, so they win over application.yml
+                "--elasticsearch.uris=" + stub.uri(),
+                "--elasticsearch.client.mode=" + clientMode,
+                "--elasticsearch.cache.by-id.enabled=" + caches,
+                "--elasticsearch.cache.search.enabled=" + caches,
+                "--elasticsearch.mget.enabled=false", // the batching window would dominate a single-threaded loop
+                "--elasticsearch.seed.enabled=false",
+                "--elasticsearch.index.bootstrap.enabled=false",
+                "--elasticsearch.suggest.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.elasticsearchreactivedemo=WARN");
+        controller = context.getBean(ProductController.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        stub.close();
+    }
+
+    @Benchmark
+    public byte[] getProductById() throws Exception {
+        return objectMapper.writeValueAsBytes(controller.getProductById("id-7").block().getBody());
+    }
+
+    @Benchmark
+    public byte[] searchProducts() throws Exception {
+        List<ProductDocument> results = controller.searchProducts("product").collectList().block();
+        return objectMapper.writeValueAsBytes(results);
+    }
+}
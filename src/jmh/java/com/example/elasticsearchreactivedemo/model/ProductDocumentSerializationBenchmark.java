@@ -0,0 +1,57 @@
+package com.example.elasticsearchreactivedemo.model;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.example.elasticsearchreactivedemo.support.BenchmarkProducts;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+// ProductDocument through the client's JacksonJsonpMapper, as on every index request and every hit
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductDocumentSerializationBenchmark {
+
+    private final JsonpMapper mapper = new JacksonJsonpMapper();
+    private ProductDocument product;
+    private byte[] json;
+
+    @Setup
+    public void setUp() {
+        product = BenchmarkProducts.product(42);
+        json = serialize();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(out)) {
+            mapper.serialize(product, generator);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public ProductDocument deserialize() {
+        try (JsonParser parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(json))) {
+            return mapper.deserialize(parser, ProductDocument.class);
+        }
+    }
+}
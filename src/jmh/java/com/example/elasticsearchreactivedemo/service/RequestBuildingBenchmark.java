@@ -0,0 +1,49 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.IndexRequest;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.support.BenchmarkProducts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Builder cost of the requests ProductService creates per call, mirroring saveProduct and fetchSearchResults
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBuildingBenchmark {
+
+    private final ProductDocument product = BenchmarkProducts.product(42);
+
+    @Benchmark
+    public IndexRequest<ProductDocument> indexRequest() {
+        return IndexRequest.of(i -> i
+            .index("products")
+            .id(product.id())
+            .document(product)
+            .refresh(Refresh.False));
+    }
+
+    @Benchmark
+    public SearchRequest searchRequest() {
+        return SearchRequest.of(s -> s
+            .index("products")
+            .query(q -> q
+                .multiMatch(m -> m
+                    .query("wireless headphones")
+                    .fields("name^3", "description", "category", "tags"))));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.support.BenchmarkProducts;
+import com.example.elasticsearchreactivedemo.support.InMemoryElasticsearchTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Decoding a _search response into documents: through the client's SearchResponse and Hits as ProductScanner does,
+// and in one pass over the raw body as ProductService.fetchSearchResults does
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchHitMappingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int hits;
+
+    private ElasticsearchClient client;
+    private SearchRequest request;
+    private SearchResponse<ProductDocument> response;
+    private byte[] body;
+    private RawSearchHits rawSearchHits;
+
+    @Setup
+    public void setUp() throws IOException {
+        body = BenchmarkProducts.searchResponse(hits);
+        rawSearchHits = new RawSearchHits(new ObjectMapper());
+        client = new ElasticsearchClient(new InMemoryElasticsearchTransport().respond("es/search", r -> body));
+        request = SearchRequest.of(s -> s.index("products").query(q -> q.matchAll(m -> m)));
+        response = client.search(request, ProductDocument.class);
+    }
+
+    @Benchmark
+    public List<ProductDocument> decodeAndMap() throws IOException {
+        return map(client.search(request, ProductDocument.class));
+    }
+
+    @Benchmark
+    public List<ProductDocument> decodeRaw() throws IOException {
+        return rawSearchHits.decode(new ByteArrayEntity(body, ContentType.APPLICATION_JSON)).products();
+    }
+
+    @Benchmark
+    public List<ProductDocument> mapOnly() {
+        return map(response);
+    }
+
+    private static List<ProductDocument> map(SearchResponse<ProductDocument> response) {
+        List<ProductDocument> documents = new ArrayList<>(response.hits().hits().size());
+        response.hits().hits().forEach(hit -> documents.add(ProductService.fromHit(hit)));
+        return documents;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.elasticsearchreactivedemo.support;
+
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Deterministic products and Elasticsearch response bodies shared by the benchmarks
+public final class BenchmarkProducts {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] CATEGORIES = {"Electronics", "Books", "Home", "Sports", "Toys"};
+
+    private BenchmarkProducts() {
+    }
+
+    public static ProductDocument product(int i) {
+        return new ProductDocument("id-" + i, "Product " + i,
+            "A reasonably long description of product number " + i + " with a few searchable words in it",
+            10 + i % 990 + 0.99, CATEGORIES[i % CATEGORIES.length], List.of("tag" + i % 7, "tag" + i % 11, "sale"));
+    }
+
+    public static List<ProductDocument> products(int count) {
+        return IntStream.range(0, count).mapToObj(BenchmarkProducts::product).toList();
+    }
+
+    // Body of a _search response with the given number of hits
+    public static byte[] searchResponse(int hits) {
+        ObjectNode response = MAPPER.createObjectNode();
+        response.put("took", 1).put("timed_out", false);
+        response.putObject("_shards").put("total", 1).put("successful", 1).put("skipped", 0).put("failed", 0);
+        ObjectNode hitsNode = response.putObject("hits");
+        hitsNode.putObject("total").put("value", hits).put("relation", "eq");
+        hitsNode.put("max_score", 1.0);
+        ArrayNode array = hitsNode.putArray("hits");
+        for (int i = 0; i < hits; i++) {
+            array.addObject()
+                .put("_index", "products")
+                .put("_id", "id-" + i)
+                .put("_score", 1.0)
+                .set("_source", source(product(i)));
+        }
+        return bytes(response);
+    }
+
+    // Body of a found GET response
+    public static byte[] getResponse(String id) {
+        ObjectNode response = MAPPER.createObjectNode()
+            .put("_index", "products")
+            .put("_id", id)
+            .put("_version", 1)
+            .put("_seq_no", 0)
+            .put("_primary_term", 1)
+            .put("found", true);
+        response.set("_source", source(product(Math.abs(id.hashCode() % 1000))));
+        return bytes(response);
+    }
+
+    private static ObjectNode source(ProductDocument product) {
+        ObjectNode source = MAPPER.valueToTree(product);
+        source.remove("id"); // ids live in hit metadata, not in _source
+        return source;
+    }
+
+    private static byte[] bytes(ObjectNode node) {
+        try {
+            return MAPPER.writeValueAsBytes(node);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
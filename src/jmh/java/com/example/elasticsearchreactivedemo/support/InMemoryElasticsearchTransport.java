@@ -0,0 +1,81 @@
+package com.example.elasticsearchreactivedemo.support;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.DefaultTransportOptions;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.JsonEndpoint;
+import co.elastic.clients.transport.TransportOptions;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Transport that answers from canned JSON instead of the network. Request bodies are still serialized and
+// responses still parsed by the endpoint's own deserializer, so benchmarks see the client's real codec cost.
+public class InMemoryElasticsearchTransport implements ElasticsearchTransport {
+
+    private final JsonpMapper mapper = new JacksonJsonpMapper();
+    private final Map<String, Function<Object, byte[]>> responses = new ConcurrentHashMap<>();
+
+    // Answer requests for the given endpoint id (e.g. "es/search", "es/get") with the JSON built from the request
+    public InMemoryElasticsearchTransport respond(String endpointId, Function<Object, byte[]> response) {
+        responses.put(endpointId, response);
+        return this;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request,
+                                                                  Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) {
+        Function<Object, byte[]> response = responses.get(endpoint.id());
+        if (response == null || !(endpoint instanceof JsonEndpoint<RequestT, ResponseT, ErrorT> jsonEndpoint)) {
+            throw new UnsupportedOperationException("No canned response for endpoint " + endpoint.id());
+        }
+        writeBody(endpoint.body(request));
+        try (JsonParser parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(response.apply(request)))) {
+            return jsonEndpoint.responseDeserializer().deserialize(parser, mapper);
+        }
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                          Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                          TransportOptions options) {
+        try {
+            return CompletableFuture.completedFuture(performRequest(request, endpoint, options));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void writeBody(Object body) {
+        if (body == null) {
+            return;
+        }
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(OutputStream.nullOutputStream())) {
+            mapper.serialize(body, generator);
+        }
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return mapper;
+    }
+
+    @Override
+    public TransportOptions options() {
+        return DefaultTransportOptions.EMPTY;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+}
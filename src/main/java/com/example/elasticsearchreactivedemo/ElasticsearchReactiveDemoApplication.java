@@ -2,8 +2,10 @@ package com.example.elasticsearchreactivedemo;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.elasticsearch.ElasticsearchRestClientAutoConfiguration;
 
-@SpringBootApplication
+// The RestClient, and its optional sniffer, are configured in ElasticsearchConfig
+@SpringBootApplication(exclude = ElasticsearchRestClientAutoConfiguration.class)
 public class ElasticsearchReactiveDemoApplication {
 
     public static void main(String[] args) {
@@ -1,18 +1,30 @@
 package com.example.elasticsearchreactivedemo.config;
 
+import com.example.elasticsearchreactivedemo.model.BulkIngestResult;
 import com.example.elasticsearchreactivedemo.model.ProductDocument;
 import com.example.elasticsearchreactivedemo.service.ProductService;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.EventListener;
-import org.springframework.core.io.ClassPathResource;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.List;
+import org.springframework.core.io.Resource;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Configuration
 public class DataInitializer {
@@ -20,29 +32,115 @@ public class DataInitializer {
     private final ProductService productService;
     private final ObjectMapper objectMapper;
 
+    @Value("${elasticsearch.seed.enabled:true}")
+    private boolean enabled;
+
+    @Value("${elasticsearch.seed.location:classpath:sample-products.json}")
+    private Resource seedResource;
+
+    @Value("${elasticsearch.seed.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${elasticsearch.seed.retry-backoff:2s}")
+    private Duration retryBackoff;
+
+    // Read by the sampleData health indicator, which is part of the readiness group
+    private volatile Health status = Health.outOfService().withDetail("state", "pending").build();
+
     public DataInitializer(ProductService productService, ObjectMapper objectMapper) {
         this.productService = productService;
         this.objectMapper = objectMapper;
     }
 
+    @Bean
+    public HealthIndicator sampleDataHealthIndicator() {
+        return () -> status;
+    }
+
+    // A failed load, e.g. because Elasticsearch is not reachable yet, starts over from the beginning of the file
+    // after an exponential backoff; re-indexing the documents already loaded is harmless since they carry their IDs.
+    // An unreadable seed file is not retried. Once the retries are used up the failure is final and says so.
     @EventListener(ApplicationReadyEvent.class)
     public void loadSampleData() {
+        if (!enabled) {
+            status = Health.up().withDetail("state", "disabled").build();
+            return;
+        }
+        logger.info("Starting to load sample product data from {}...", seedResource);
+        status = Health.outOfService().withDetail("state", "loading").build();
+        long start = System.nanoTime();
+        AtomicInteger attempts = new AtomicInteger(1);
+
+        productService.saveProducts(readProducts(seedResource))
+            .retryWhen(Retry.backoff(maxRetries, retryBackoff)
+                .maxBackoff(Duration.ofMinutes(1))
+                .filter(error -> !(error instanceof JsonProcessingException || error instanceof FileNotFoundException))
+                .doBeforeRetry(signal -> {
+                    logger.warn("Loading sample data failed (attempt {} of {}), retrying: {}",
+                        attempts.get(), maxRetries + 1, signal.failure().toString());
+                    status = Health.outOfService()
+                        .withDetail("state", "retrying")
+                        .withDetail("attempt", attempts.incrementAndGet())
+                        .withDetail("lastError", signal.failure().toString())
+                        .build();
+                })
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+            .subscribe(
+                result -> {
+                    Duration took = Duration.ofNanos(System.nanoTime() - start);
+                    double perSecond = result.indexed() / Math.max(took.toNanos() / 1e9, 1e-3);
+                    logger.info("Loaded sample products in {} ms ({} docs/s): {}", took.toMillis(), Math.round(perSecond), result);
+                    status = loaded(result, took, perSecond);
+                },
+                error -> {
+                    logger.error("Error loading sample data, giving up after {} attempts", attempts.get(), error);
+                    status = Health.down(error)
+                        .withDetail("state", "failed")
+                        .withDetail("attempts", attempts.get())
+                        .withDetail("retrying", false) // stays down until restarted
+                        .build();
+                });
+    }
+
+    // Streams the seed file token by token, so only the documents currently being batched are on the heap.
+    // Accepts either a JSON array or a sequence of top-level objects (NDJSON).
+    Flux<ProductDocument> readProducts(Resource resource) {
+        return Flux.using(
+                () -> objectMapper.getFactory().createParser(resource.getInputStream()),
+                parser -> Flux.<ProductDocument>generate(sink -> {
+                    try {
+                        JsonToken token = parser.nextToken();
+                        if (token == JsonToken.START_ARRAY) {
+                            token = parser.nextToken();
+                        }
+                        if (token == JsonToken.START_OBJECT) {
+                            sink.next(parser.readValueAs(ProductDocument.class));
+                        } else {
+                            sink.complete();
+                        }
+                    } catch (IOException e) {
+                        sink.error(e);
+                    }
+                }),
+                DataInitializer::closeQuietly)
+            .subscribeOn(Schedulers.boundedElastic()); // Blocking file IO
+    }
+
+    private static Health loaded(BulkIngestResult result, Duration took, double perSecond) {
+        return Health.up()
+            .withDetail("state", "loaded")
+            .withDetail("indexed", result.indexed())
+            .withDetail("failed", result.failed())
+            .withDetail("tookMillis", took.toMillis())
+            .withDetail("docsPerSecond", Math.round(perSecond))
+            .build();
+    }
+
+    private static void closeQuietly(JsonParser parser) {
         try {
-            logger.info("Starting to load sample product data...");
-            ClassPathResource resource = new ClassPathResource("sample-products.json");
-            List<ProductDocument> products = objectMapper.readValue(
-                Files.readString(Paths.get(resource.getURI())),
-                new TypeReference<List<ProductDocument>>() {}
-            );
-            
-            productService.saveProducts(products)
-                .doOnSuccess(result -> logger.info("Successfully loaded {} products", products.size()))
-                .doOnError(error -> logger.error("Error loading sample data", error))
-                .subscribe();
-                
-        } catch (Exception e) {
-            logger.error("Failed to load sample data", e);
-            throw new RuntimeException("Failed to load sample data", e);
+            parser.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close seed file", e);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,31 +1,53 @@
 package com.example.elasticsearchreactivedemo.config;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
 import co.elastic.clients.transport.rest_client.RestClientTransport;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.elasticsearch.client.NodeSelector;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.util.StringUtils;
 
 import javax.net.ssl.SSLContext;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.function.ToDoubleFunction;
 
 @Configuration
 public class ElasticsearchConfig {
 
+    // Comma-separated; requests are round-robined across the nodes and failing nodes are retried with backoff
     @Value("${elasticsearch.uris}")
-    private String elasticsearchUri;
+    private String[] elasticsearchUris;
 
     @Value("${elasticsearch.username:#{null}}")
     private String username;
@@ -33,50 +55,147 @@ public class ElasticsearchConfig {
     @Value("${elasticsearch.password:#{null}}")
     private String password;
 
+    @Value("${elasticsearch.connection.max-per-route:10}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${elasticsearch.connection.max-total:30}")
+    private int maxConnectionsTotal;
+
+    @Value("${elasticsearch.connection.keep-alive:30s}")
+    private Duration keepAlive;
+
+    @Value("${elasticsearch.connection.connect-timeout:1s}")
+    private Duration connectTimeout;
+
+    @Value("${elasticsearch.connection.socket-timeout:30s}")
+    private Duration socketTimeout;
+
+    @Value("${elasticsearch.compression.enabled:false}")
+    private boolean compressionEnabled;
+
+    @Value("${elasticsearch.node-selector:any}")
+    private String nodeSelector;
+
+    @Value("${elasticsearch.sniffer.interval:5m}")
+    private Duration sniffInterval;
+
+    @Value("${elasticsearch.sniffer.after-failure-delay:1m}")
+    private Duration sniffAfterFailureDelay;
+
+    // Created here rather than inside the RestClient so its pool can be observed
     @Bean
-    public RestClient elasticsearchRestClient() throws Exception {
-        // Ensure the URI is not null
-        String uri = Objects.requireNonNull(elasticsearchUri, "Elasticsearch URI must not be null");
-        
-        // Parse host and port from URI
-        String[] parts = uri.split(":");
-        String scheme = parts[0];
-        String host = parts[1].replace("//", "");
-        int port = Integer.parseInt(parts[2]);
-
-        RestClientBuilder builder = RestClient.builder(
-            new HttpHost(host, port, scheme)
-        );
-
-        // Configure credentials if username is provided
-        if (StringUtils.hasText(username)) {
-            final BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-            credentialsProvider.setCredentials(AuthScope.ANY,
-                new UsernamePasswordCredentials(username, password));
-
-            builder.setHttpClientConfigCallback(httpClientBuilder -> {
-                httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
-                
-                // If HTTPS, disable SSL verification
-                if ("https".equalsIgnoreCase(scheme)) {
-                    try {
-                        SSLContext sslContext = new SSLContextBuilder()
-                            .loadTrustMaterial(null, (X509Certificate[] chain, String authType) -> true)
-                            .build();
-                        
-                        httpClientBuilder.setSSLContext(sslContext)
-                            .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE);
-                    } catch (Exception e) {
-                        throw new RuntimeException("Failed to configure SSL context", e);
-                    }
-                }
-                return httpClientBuilder;
-            });
+    public PoolingNHttpClientConnectionManager elasticsearchConnectionManager() throws Exception {
+        PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(
+            new DefaultConnectingIOReactor(IOReactorConfig.custom()
+                .setIoThreadCount(Runtime.getRuntime().availableProcessors())
+                .setSoKeepAlive(true) // TCP keep-alive, so silently dropped connections are detected
+                .build()),
+            RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", sslStrategy())
+                .build());
+        // The per-route limit applies to each node, the total across all of them
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setMaxTotal(maxConnectionsTotal);
+        return connectionManager;
+    }
+
+    // With credentials configured, SSL verification is disabled (self-signed development clusters)
+    private SchemeIOSessionStrategy sslStrategy() throws Exception {
+        if (!StringUtils.hasText(username)) {
+            return SSLIOSessionStrategy.getDefaultStrategy();
         }
+        SSLContext sslContext = new SSLContextBuilder()
+            .loadTrustMaterial(null, (X509Certificate[] chain, String authType) -> true)
+            .build();
+        return new SSLIOSessionStrategy(sslContext, NoopHostnameVerifier.INSTANCE);
+    }
+
+    @Bean
+    public MeterBinder elasticsearchConnectionPoolMetrics(PoolingNHttpClientConnectionManager connectionManager) {
+        return registry -> {
+            poolGauge(registry, connectionManager, "leased", "Connections in use", PoolStats::getLeased);
+            poolGauge(registry, connectionManager, "available", "Idle connections kept alive", PoolStats::getAvailable);
+            poolGauge(registry, connectionManager, "pending", "Requests waiting for a connection", PoolStats::getPending);
+            poolGauge(registry, connectionManager, "max", "Maximum connections", PoolStats::getMax);
+        };
+    }
+
+    private static void poolGauge(MeterRegistry registry,
+                                  PoolingNHttpClientConnectionManager connectionManager,
+                                  String name, String description, ToDoubleFunction<PoolStats> value) {
+        Gauge.builder("elasticsearch.http.pool." + name, connectionManager, cm -> value.applyAsDouble(cm.getTotalStats()))
+            .description(description)
+            .register(registry);
+    }
+
+    // Only created with sniffing enabled; lets the sniffer refresh the node list as soon as a node fails
+    @Bean
+    @ConditionalOnProperty(name = "elasticsearch.sniffer.enabled", havingValue = "true")
+    public SniffOnFailureListener elasticsearchSniffOnFailureListener() {
+        return new SniffOnFailureListener();
+    }
+
+    @Bean
+    public RestClient elasticsearchRestClient(PoolingNHttpClientConnectionManager connectionManager,
+                                              ObjectProvider<SniffOnFailureListener> sniffOnFailure) throws Exception {
+        HttpHost[] hosts = Arrays.stream(Objects.requireNonNull(elasticsearchUris, "Elasticsearch URIs must not be null"))
+            .filter(StringUtils::hasText)
+            .map(HttpHost::create)
+            .toArray(HttpHost[]::new);
+
+        RestClientBuilder builder = RestClient.builder(hosts)
+            .setNodeSelector(nodeSelector())
+            .setCompressionEnabled(compressionEnabled) // gzip request bodies and accept gzip responses
+            .setRequestConfigCallback(requestConfig -> requestConfig
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) socketTimeout.toMillis()));
+        sniffOnFailure.ifAvailable(builder::setFailureListener);
+
+        builder.setHttpClientConfigCallback(httpClientBuilder -> {
+            // Pool limits and SSL come from the connection manager
+            httpClientBuilder.setConnectionManager(connectionManager);
+            // Reuse idle connections for at most keep-alive, well below typical load balancer idle timeouts
+            httpClientBuilder.setKeepAliveStrategy((response, context) -> keepAlive.toMillis());
+
+            // Configure credentials if username is provided
+            if (StringUtils.hasText(username)) {
+                final BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+                credentialsProvider.setCredentials(AuthScope.ANY,
+                    new UsernamePasswordCredentials(username, password));
+                httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
+            }
+            return httpClientBuilder;
+        });
 
         return builder.build();
     }
 
+    private NodeSelector nodeSelector() {
+        return switch (nodeSelector) {
+            case "any" -> NodeSelector.ANY;
+            // Keep search and indexing load off dedicated master nodes found by sniffing
+            case "skip-dedicated-masters" -> NodeSelector.SKIP_DEDICATED_MASTERS;
+            default -> throw new IllegalArgumentException("Unknown elasticsearch.node-selector: " + nodeSelector);
+        };
+    }
+
+    // Periodically replaces the configured nodes with the cluster's current HTTP-enabled nodes
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "elasticsearch.sniffer.enabled", havingValue = "true")
+    public Sniffer elasticsearchSniffer(RestClient restClient, SniffOnFailureListener sniffOnFailure) {
+        ElasticsearchNodesSniffer.Scheme scheme = "https".equalsIgnoreCase(HttpHost.create(elasticsearchUris[0].trim()).getSchemeName())
+            ? ElasticsearchNodesSniffer.Scheme.HTTPS
+            : ElasticsearchNodesSniffer.Scheme.HTTP;
+        Sniffer sniffer = Sniffer.builder(restClient)
+            .setNodesSniffer(new ElasticsearchNodesSniffer(restClient, ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT, scheme))
+            .setSniffIntervalMillis((int) sniffInterval.toMillis())
+            .setSniffAfterFailureDelayMillis((int) sniffAfterFailureDelay.toMillis())
+            .build();
+        sniffOnFailure.setSniffer(sniffer);
+        return sniffer;
+    }
+
     @Bean
     public ElasticsearchTransport elasticsearchTransport(RestClient restClient) {
         return new RestClientTransport(restClient, new JacksonJsonpMapper());
@@ -86,4 +205,10 @@ public class ElasticsearchConfig {
     public ElasticsearchClient elasticsearchClient(ElasticsearchTransport transport) {
         return new ElasticsearchClient(transport);
     }
+
+    // Shares the transport (and connection pool) with the blocking client; see elasticsearch.client.mode
+    @Bean
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport transport) {
+        return new ElasticsearchAsyncClient(transport);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.example.elasticsearchreactivedemo.config;
+
+import com.example.elasticsearchreactivedemo.service.ProductIndexManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class IndexInitializer {
+    private static final Logger logger = LoggerFactory.getLogger(IndexInitializer.class);
+    private final ProductIndexManager indexManager;
+
+    @Value("${elasticsearch.index.bootstrap.enabled:true}")
+    private boolean enabled;
+
+    @Value("${elasticsearch.index.bootstrap.timeout:30s}")
+    private Duration timeout;
+
+    // Read by the index health indicator, which is part of the readiness group
+    private volatile Health status = Health.outOfService().withDetail("state", "pending").build();
+
+    public IndexInitializer(ProductIndexManager indexManager) {
+        this.indexManager = indexManager;
+    }
+
+    @Bean
+    public HealthIndicator indexHealthIndicator() {
+        return () -> status;
+    }
+
+    // Runs before the other ApplicationReadyEvent listeners (seed data, suggestions), so the first documents are
+    // indexed with the explicit mappings instead of dynamically mapped ones
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void bootstrapIndex() {
+        if (!enabled) {
+            status = Health.up().withDetail("state", "disabled").build();
+            return;
+        }
+        try {
+            boolean templateWritten = Boolean.TRUE.equals(indexManager.putTemplate().block(timeout));
+            boolean created = Boolean.TRUE.equals(indexManager.createIndexIfMissing().block(timeout));
+            List<String> drift = indexManager.mappingDrift().block(timeout);
+            logger.info("Index bootstrap finished: template {} {}, index {}", indexManager.templateName(),
+                templateWritten ? "installed" : "up to date", created ? "created" : "already present");
+            if (drift != null && !drift.isEmpty()) {
+                // Still serving, but filters, facets and search on the drifted fields may miss documents
+                logger.warn("Index mappings differ from product-mappings.json, reindex to apply them: {}", drift);
+            }
+            status = Health.up()
+                .withDetail("state", created ? "created" : "existing")
+                .withDetail("mappingDrift", drift == null ? List.of() : drift)
+                .build();
+        } catch (RuntimeException e) {
+            logger.error("Index bootstrap failed", e);
+            status = Health.down(e).withDetail("state", "failed").build();
+        }
+    }
+}
@@ -1,15 +1,38 @@
 package com.example.elasticsearchreactivedemo.controller;
 
+import com.example.elasticsearchreactivedemo.model.DocumentVersion;
+import com.example.elasticsearchreactivedemo.model.FacetedSearchResult;
+import com.example.elasticsearchreactivedemo.model.FieldProjection;
+import com.example.elasticsearchreactivedemo.model.ImportEvent;
 import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.ProductFilter;
+import com.example.elasticsearchreactivedemo.model.ProductIdsRequest;
+import com.example.elasticsearchreactivedemo.model.ProductPatch;
+import com.example.elasticsearchreactivedemo.model.ReindexResult;
+import com.example.elasticsearchreactivedemo.model.Suggestion;
+import com.example.elasticsearchreactivedemo.model.TaskHandle;
+import com.example.elasticsearchreactivedemo.model.TaskProgress;
+import com.example.elasticsearchreactivedemo.service.ElasticsearchOverloadedException;
 import com.example.elasticsearchreactivedemo.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.net.URI;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
 @RestController
 @RequestMapping("/api/v1/products")
 @RequiredArgsConstructor
@@ -21,46 +44,243 @@ public class ProductController {
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<ProductDocument> createProduct(@RequestBody ProductDocument product) {
-        log.info("Received request to create product: {}", product.getName());
+        log.info("Received request to create product: {}", product.name());
         // ID is typically generated by the service or ES, so don't expect it in request body usually
         // Ensure ID is null or handle appropriately if client tries to set it
-        product.setId(null);
-        return productService.saveProduct(product);
+        return productService.saveProduct(product.withId(null));
+    }
+
+    // Accepts an NDJSON body of any size and streams back per-line errors and indexing progress
+    @PostMapping(value = "/_import", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ImportEvent> importProducts(@RequestBody Flux<DataBuffer> body) {
+        log.info("Received request to import products");
+        return productService.importProducts(body);
+    }
+
+    // Rebuilds the current catalog into a new index and swaps the alias once it is ready
+    @PostMapping("/_reindex")
+    public Mono<ReindexResult> reindexProducts() {
+        log.info("Received request to reindex products");
+        return productService.reindexProducts().onErrorMap(IllegalStateException.class, ProductController::conflict);
+    }
+
+    // Replaces the catalog with the uploaded NDJSON, loaded the same way as a reindex
+    @PostMapping(value = "/_reindex", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ReindexResult> reloadProducts(@RequestBody Flux<DataBuffer> body) {
+        log.info("Received request to reload products");
+        return productService.reloadProducts(body).onErrorMap(IllegalStateException.class, ProductController::conflict);
     }
 
+    private static ResponseStatusException conflict(IllegalStateException e) {
+        return new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+    }
+
+    // The ETag can be sent as If-Match on a PATCH; it is left out for a write not yet drained from the write-behind log
     @GetMapping("/{id}")
     public Mono<ResponseEntity<ProductDocument>> getProductById(@PathVariable String id) {
         log.info("Received request to get product with ID: {}", id);
-        return productService.getProductById(id)
-            .map(ResponseEntity::ok) // If found, wrap in 200 OK
+        return productService.getVersionedProductById(id)
+            .map(found -> found.version() == null // If found, wrap in 200 OK
+                ? ResponseEntity.ok(found.product())
+                : ResponseEntity.ok().eTag(found.version().toETag()).body(found.product()))
             .defaultIfEmpty(ResponseEntity.notFound().build()); // If Mono is empty (not found), return 404
     }
 
+    // e.g. ?fields=name,price or ?fields=-description; only the requested fields are read from Elasticsearch
+    @GetMapping(value = "/{id}", params = "fields")
+    public Mono<ResponseEntity<Map<String, Object>>> getProductFields(@PathVariable String id, @RequestParam String fields) {
+        log.info("Received request to get fields '{}' of product with ID: {}", fields, id);
+        return productService.getProductById(id, parseFields(fields))
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/_mget")
+    public Flux<ProductDocument> getProductsByIds(@RequestBody ProductIdsRequest request) {
+        log.info("Received request to get {} products by ID", request.ids().size());
+        return productService.getProductsByIds(request.ids());
+    }
+
     @GetMapping("/search")
     public Flux<ProductDocument> searchProducts(@RequestParam String query) {
         log.info("Received request to search products with query: '{}'", query);
         return productService.searchProducts(query);
     }
 
+    // Same results and JSON as /search, streamed from Elasticsearch's response without building a SearchResponse
+    @GetMapping(value = "/search", params = "raw=true", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DataBuffer> searchProductsRaw(@RequestParam String query, ServerHttpResponse response) {
+        log.info("Received request to search raw products with query: '{}'", query);
+        return productService.searchProductsRaw(query, response.bufferFactory());
+    }
+
+    @GetMapping(value = "/search", params = "fields")
+    public Flux<Map<String, Object>> searchProductFields(@RequestParam String query, @RequestParam String fields) {
+        log.info("Received request to search fields '{}' of products with query: '{}'", fields, query);
+        return productService.searchProducts(query, parseFields(fields));
+    }
+
+    // Raw hits are whole documents, so a projection cannot be streamed; the more specific mapping keeps the two
+    // above from both matching
+    @GetMapping(value = "/search", params = {"raw=true", "fields"})
+    public Flux<DataBuffer> searchProductFieldsRaw() {
+        return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "raw=true cannot be combined with fields"));
+    }
+
+    // Autocomplete for names and tags, answered from memory. Logged at debug only: one request per keystroke.
+    @GetMapping("/suggest")
+    public Flux<Suggestion> suggest(@RequestParam String prefix, @RequestParam(defaultValue = "10") int size) {
+        log.debug("Received suggest request for prefix: '{}'", prefix);
+        return Flux.fromIterable(productService.suggest(prefix, Math.max(0, Math.min(size, 50))));
+    }
+
+    // Filters and facets in one request, e.g. ?query=laptop&category=Electronics&tag=portable&minPrice=500
+    @GetMapping("/_search")
+    public Mono<FacetedSearchResult> searchFacets(@RequestParam(required = false) String query,
+                                                  @RequestParam(required = false) String category,
+                                                  @RequestParam(name = "tag", required = false) List<String> tags,
+                                                  @RequestParam(required = false) Double minPrice,
+                                                  @RequestParam(required = false) Double maxPrice,
+                                                  @RequestParam(defaultValue = "10") int size,
+                                                  @RequestParam(defaultValue = "100") double priceInterval) {
+        log.info("Received faceted search request: query='{}', category={}, tags={}, price={}..{}",
+            query, category, tags, minPrice, maxPrice);
+        if (size < 0 || size > 100 || priceInterval <= 0) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be 0..100 and priceInterval positive"));
+        }
+        return Mono.defer(() -> productService.searchFacets(parseFilter(query, category, tags, minPrice, maxPrice), size, priceInterval));
+    }
+
+    // Deletes everything matching the same filters as /_search in a background task; without filters, the whole catalog
+    @PostMapping("/_delete_by_query")
+    public Mono<ResponseEntity<TaskHandle>> deleteByQuery(@RequestParam(required = false) String query,
+                                                          @RequestParam(required = false) String category,
+                                                          @RequestParam(name = "tag", required = false) List<String> tags,
+                                                          @RequestParam(required = false) Double minPrice,
+                                                          @RequestParam(required = false) Double maxPrice,
+                                                          @RequestParam(required = false) Float requestsPerSecond) {
+        log.info("Received delete by query request: query='{}', category={}, tags={}, price={}..{}",
+            query, category, tags, minPrice, maxPrice);
+        return Mono.defer(() -> productService.deleteProductsByQuery(parseFilter(query, category, tags, minPrice, maxPrice), requestsPerSecond))
+            .map(ProductController::accepted)
+            .onErrorMap(IllegalStateException.class, ProductController::conflict);
+    }
+
+    // Sets the fields in the body on everything matching the filters, in a background task
+    @PostMapping("/_update_by_query")
+    public Mono<ResponseEntity<TaskHandle>> updateByQuery(@RequestParam(required = false) String query,
+                                                          @RequestParam(required = false) String category,
+                                                          @RequestParam(name = "tag", required = false) List<String> tags,
+                                                          @RequestParam(required = false) Double minPrice,
+                                                          @RequestParam(required = false) Double maxPrice,
+                                                          @RequestParam(required = false) Float requestsPerSecond,
+                                                          @RequestBody ProductPatch patch) {
+        log.info("Received update by query request: query='{}', category={}, tags={}, price={}..{}",
+            query, category, tags, minPrice, maxPrice);
+        return Mono.defer(() -> productService.updateProductsByQuery(parseFilter(query, category, tags, minPrice, maxPrice), patch, requestsPerSecond))
+            .map(ProductController::accepted)
+            .onErrorMap(IllegalStateException.class, ProductController::conflict)
+            .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    private static ResponseEntity<TaskHandle> accepted(TaskHandle task) {
+        return ResponseEntity.accepted().location(URI.create("/api/v1/products/_tasks/" + task.taskId())).body(task);
+    }
+
+    // Streams progress of a by-query task until it completes, as NDJSON or server-sent events
+    @GetMapping(value = "/_tasks/{taskId}", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<TaskProgress> taskProgress(@PathVariable String taskId) {
+        log.debug("Received task progress request for {}", taskId);
+        return productService.taskProgress(taskId).onErrorMap(NoSuchElementException.class, ProductController::taskNotFound);
+    }
+
+    @PostMapping("/_tasks/{taskId}/_rethrottle")
+    public Mono<ResponseEntity<Void>> rethrottleTask(@PathVariable String taskId, @RequestParam float requestsPerSecond) {
+        log.info("Received request to rethrottle task {} to {}/s", taskId, requestsPerSecond);
+        return productService.rethrottleTask(taskId, requestsPerSecond)
+            .then(Mono.just(ResponseEntity.noContent().<Void>build()))
+            .onErrorMap(NoSuchElementException.class, ProductController::taskNotFound);
+    }
+
+    @DeleteMapping("/_tasks/{taskId}")
+    public Mono<ResponseEntity<Void>> cancelTask(@PathVariable String taskId) {
+        log.info("Received request to cancel task {}", taskId);
+        return productService.cancelTask(taskId)
+            .then(Mono.just(ResponseEntity.noContent().<Void>build()))
+            .onErrorMap(NoSuchElementException.class, ProductController::taskNotFound);
+    }
+
+    private static ResponseStatusException taskNotFound(NoSuchElementException e) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+    }
+
+    private static ProductFilter parseFilter(String query, String category, List<String> tags, Double minPrice, Double maxPrice) {
+        try {
+            return new ProductFilter(query, category, tags, minPrice, maxPrice);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static FieldProjection parseFields(String fields) {
+        try {
+            return FieldProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Streams the full catalog as NDJSON or server-sent events, depending on the Accept header
+    @GetMapping(value = "/_export", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<ProductDocument> exportProducts() {
+        log.info("Received request to export all products");
+        return productService.exportProducts();
+    }
+
     @PutMapping("/{id}")
      public Mono<ResponseEntity<ProductDocument>> updateProduct(@PathVariable String id, @RequestBody ProductDocument product) {
-        log.info("Received request to update product with ID {}: {}", id, product.getName());
+        log.info("Received request to update product with ID {}: {}", id, product.name());
          // Ensure the ID from the path is set on the object to be saved
-        product.setId(id);
         // Use saveProduct which acts like upsert
-        return productService.saveProduct(product)
+        return productService.saveProduct(product.withId(id))
             .map(ResponseEntity::ok)
              // Add error handling if save fails or if you want to ensure it previously existed
             .defaultIfEmpty(ResponseEntity.notFound().build()); // Or handle based on saveProduct's result/exceptions
     }
 
 
+    // Changes only the fields in the body. With the ETag of a previous PATCH as If-Match, the update is only
+    // applied if the product has not changed since (412 otherwise).
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<ProductDocument>> patchProduct(@PathVariable String id, @RequestBody ProductPatch patch,
+                                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.info("Received request to patch product with ID {}", id);
+        DocumentVersion expected;
+        try {
+            expected = ifMatch == null ? null : DocumentVersion.fromETag(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+        HttpStatus conflictStatus = expected != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT;
+        return productService.patchProduct(id, patch, expected)
+            .map(updated -> ResponseEntity.ok().eTag(updated.version().toETag()).body(updated.product()))
+            .defaultIfEmpty(ResponseEntity.notFound().build())
+            .onErrorMap(ConcurrentModificationException.class, e -> new ResponseStatusException(conflictStatus, e.getMessage()));
+    }
+
+    // Partial updates as NDJSON, one {"id": ..., <changed fields>} per line, e.g. a price feed; reports like _import
+    @PatchMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ImportEvent> patchProducts(@RequestBody Flux<DataBuffer> body) {
+        log.info("Received request to patch products");
+        return productService.patchProducts(body);
+    }
+
     @DeleteMapping("/{id}")
     public Mono<ResponseEntity<Void>> deleteProduct(@PathVariable String id) {
         log.info("Received request to delete product with ID: {}", id);
         return productService.deleteProduct(id)
             .then(Mono.just(ResponseEntity.noContent().<Void>build())) // If delete succeeds, return 204 No Content
-            .onErrorResume(e -> { // Example: Handle potential errors like NotFoundException if thrown by service
+            .onErrorResume(e -> !(e instanceof ElasticsearchOverloadedException), e -> { // Example: Handle potential errors like NotFoundException if thrown by service
                  log.error("Error deleting product {}: {}", id, e.getMessage());
                  // Could map specific exceptions to different statuses
                  return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).<Void>build());
@@ -69,4 +289,13 @@ public class ProductController {
             // or rely on the delete operation potentially returning a specific status/result.
             // The current service logs NotFound but completes normally.
     }
+
+    // Shed load while Elasticsearch is saturated; clients should back off rather than retry right away
+    @ExceptionHandler(ElasticsearchOverloadedException.class)
+    public ResponseEntity<Map<String, String>> overloaded(ElasticsearchOverloadedException e) {
+        log.debug("Rejected request: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.retryAfter().toSeconds())))
+            .body(Map.of("error", e.getMessage()));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.example.elasticsearchreactivedemo.model;
+
+// Summary of a bulk ingestion run, returned instead of the last saved document
+public record BulkIngestResult(long indexed, long failed, long retried, long batches) {
+
+    public static final BulkIngestResult EMPTY = new BulkIngestResult(0, 0, 0, 0);
+
+    public BulkIngestResult add(long indexed, long failed, long retried) {
+        return new BulkIngestResult(this.indexed + indexed, this.failed + failed, this.retried + retried, batches + 1);
+    }
+
+    // Count documents that failed before reaching a batch, e.g. unparseable input
+    public BulkIngestResult plusFailed(long count) {
+        return new BulkIngestResult(indexed, failed + count, retried, batches);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.elasticsearchreactivedemo.model;
+
+// A document's sequence number and primary term, which together identify one version of it for
+// Elasticsearch's if_seq_no/if_primary_term checks. Sent to clients as an ETag, e.g. "42-1".
+public record DocumentVersion(long seqNo, long primaryTerm) {
+
+    public String toETag() {
+        return "\"" + seqNo + "-" + primaryTerm + "\"";
+    }
+
+    // Null unless the response carried both, as get, mget and write responses do
+    public static DocumentVersion of(Long seqNo, Long primaryTerm) {
+        return seqNo == null || primaryTerm == null ? null : new DocumentVersion(seqNo, primaryTerm);
+    }
+
+    public static DocumentVersion fromETag(String etag) {
+        String value = etag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        int dash = value.indexOf('-');
+        try {
+            return new DocumentVersion(Long.parseLong(value.substring(0, dash)), Long.parseLong(value.substring(dash + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed version '" + etag + "', expected an ETag returned by GET or PATCH");
+        }
+    }
+}
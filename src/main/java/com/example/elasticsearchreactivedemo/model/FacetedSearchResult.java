@@ -0,0 +1,17 @@
+package com.example.elasticsearchreactivedemo.model;
+
+import java.util.List;
+
+// Response of GET /api/v1/products/_search: the top hits plus counts over all matching products
+public record FacetedSearchResult(long total, List<ProductDocument> products, Facets facets) {
+
+    public record Facets(List<Bucket> categories, List<Bucket> tags, List<PriceBucket> prices) {
+    }
+
+    public record Bucket(String key, long count) {
+    }
+
+    // Products priced from (inclusive) up to from + interval (exclusive)
+    public record PriceBucket(double from, long count) {
+    }
+}
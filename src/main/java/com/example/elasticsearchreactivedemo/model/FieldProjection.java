@@ -0,0 +1,79 @@
+package com.example.elasticsearchreactivedemo.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// The ?fields= parameter of the get and search endpoints, e.g. "name,price" (only these) or "-description,-tags"
+// (all but these). It becomes a _source filter, so Elasticsearch only sends back the requested fields.
+// The id always comes from the hit metadata and is always included; "fields=id" skips the _source entirely.
+public record FieldProjection(List<String> includes, List<String> excludes, boolean fetchSource) {
+
+    private static final Map<String, Function<ProductDocument, Object>> FIELDS = new LinkedHashMap<>();
+
+    static {
+        FIELDS.put("name", ProductDocument::name);
+        FIELDS.put("description", ProductDocument::description);
+        FIELDS.put("price", ProductDocument::price);
+        FIELDS.put("category", ProductDocument::category);
+        FIELDS.put("tags", ProductDocument::tags);
+    }
+
+    public static FieldProjection parse(String fields) {
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        boolean idOnly = false;
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            boolean exclude = name.startsWith("-");
+            if (exclude) {
+                name = name.substring(1);
+            }
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (name.equals("id")) {
+                idOnly = !exclude;
+                continue;
+            }
+            if (!FIELDS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown field '" + name + "', expected one of id, " + String.join(", ", FIELDS.keySet()));
+            }
+            (exclude ? excludes : includes).add(name);
+        }
+        boolean fetchSource = !(idOnly && includes.isEmpty() && excludes.isEmpty());
+        return new FieldProjection(List.copyOf(includes), List.copyOf(excludes), fetchSource);
+    }
+
+    // Project a full document held in memory (recent writes, cache) to the same shape Elasticsearch returns
+    public Map<String, Object> apply(ProductDocument product) {
+        Map<String, Object> projected = new LinkedHashMap<>();
+        projected.put("id", product.id());
+        FIELDS.forEach((name, getter) -> {
+            if (isIncluded(name)) {
+                projected.put(name, getter.apply(product));
+            }
+        });
+        return projected;
+    }
+
+    // Combine a filtered _source with the hit's id
+    public Map<String, Object> apply(String id, Map<String, Object> source) {
+        Map<String, Object> projected = new LinkedHashMap<>();
+        projected.put("id", id);
+        if (source != null) {
+            source.forEach((name, value) -> {
+                if (isIncluded(name)) {
+                    projected.put(name, value);
+                }
+            });
+        }
+        return projected;
+    }
+
+    private boolean isIncluded(String name) {
+        return fetchSource && FIELDS.containsKey(name) && (includes.isEmpty() || includes.contains(name)) && !excludes.contains(name);
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.elasticsearchreactivedemo.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// One line of the NDJSON response streamed back by POST /api/v1/products/_import
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ImportEvent(Type type, Long line, String id, String message,
+                          Long lines, Long indexed, Long failed, Long retried) {
+
+    public enum Type {
+        error,
+        progress,
+        done
+    }
+
+    // A line that could not be parsed
+    public static ImportEvent lineError(long line, String message) {
+        return new ImportEvent(Type.error, line, null, message, null, null, null, null);
+    }
+
+    // A document that Elasticsearch rejected
+    public static ImportEvent documentError(String id, String message) {
+        return new ImportEvent(Type.error, null, id, message, null, null, null, null);
+    }
+
+    public static ImportEvent progress(long lines, BulkIngestResult totals) {
+        return totals(Type.progress, lines, totals);
+    }
+
+    public static ImportEvent done(long lines, BulkIngestResult totals) {
+        return totals(Type.done, lines, totals);
+    }
+
+    private static ImportEvent totals(Type type, long lines, BulkIngestResult totals) {
+        return new ImportEvent(type, null, null, null, lines, totals.indexed(), totals.failed(), totals.retried());
+    }
+}
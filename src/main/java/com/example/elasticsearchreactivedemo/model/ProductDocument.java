@@ -1,29 +1,30 @@
 package com.example.elasticsearchreactivedemo.model;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import java.util.List;
+import java.util.Objects;
 
-@Data // Generates getters, setters, equals, hashCode, toString
-@NoArgsConstructor // Needed for Jackson/ES deserialization
-@AllArgsConstructor // Convenient constructor
-public class ProductDocument {
+// Immutable, so cached and overlaid documents can be shared between requests without copying.
+// Read and written by ProductDocumentCodec, both by the Elasticsearch client and by WebFlux.
+@JsonSerialize(using = ProductDocumentCodec.Serializer.class)
+@JsonDeserialize(using = ProductDocumentCodec.Deserializer.class)
+public record ProductDocument(
+    String id, // Will be the Elasticsearch document ID
+    String name,
+    String description,
+    double price,
+    String category,
+    List<String> tags) {
 
-    private String id; // Will be the Elasticsearch document ID
-    private String name;
-    private String description;
-    private double price;
-    private String category;
-    private List<String> tags;
-
-    // Optional: Constructor without ID for creation requests
+    // Creation requests, the ID is assigned on save
     public ProductDocument(String name, String description, double price, String category, List<String> tags) {
-        this.name = name;
-        this.description = description;
-        this.price = price;
-        this.category = category;
-        this.tags = tags;
+        this(null, name, description, price, category, tags);
+    }
+
+    // This document itself if it already has the ID, which is the usual case for documents read from the index
+    public ProductDocument withId(String id) {
+        return Objects.equals(id, this.id) ? this : new ProductDocument(id, name, description, price, category, tags);
     }
-}
\ No newline at end of file
+}
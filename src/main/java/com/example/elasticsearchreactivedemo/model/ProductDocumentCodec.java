@@ -0,0 +1,199 @@
+package com.example.elasticsearchreactivedemo.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+// Hand-written JSON codec for ProductDocument, instead of Jackson's reflective record handling. Field names are
+// matched and written pre-encoded, and category and tag values are interned straight from the parser's character
+// buffer: a catalog has few distinct ones, so decoding a page of hits mostly reuses Strings instead of allocating
+// one per hit, and the caches do not retain thousands of equal copies.
+public final class ProductDocumentCodec {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString DESCRIPTION = new SerializedString("description");
+    private static final SerializedString PRICE = new SerializedString("price");
+    private static final SerializedString CATEGORY = new SerializedString("category");
+    private static final SerializedString TAGS = new SerializedString("tags");
+
+    // Direct-mapped by hash, a colliding value replaces the previous one; longer values are not worth interning.
+    // Unsynchronized on purpose: a racing reader sees either slot value, and either is a correct String.
+    private static final int INTERN_SLOTS = 4096;
+    private static final int MAX_INTERNED_LENGTH = 64;
+    private static final String[] INTERNED = new String[INTERN_SLOTS];
+
+    private ProductDocumentCodec() {
+    }
+
+    // Reads the object at the parser's current token. A non-null id takes precedence over an "id" field in the
+    // object, so hits get their _id bound while they are decoded.
+    public static ProductDocument read(JsonParser parser, String id) throws IOException {
+        String sourceId = null;
+        String name = null;
+        String description = null;
+        double price = 0;
+        String category = null;
+        List<String> tags = null;
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        }
+        for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id" -> sourceId = id != null ? null : text(parser);
+                case "name" -> name = text(parser);
+                case "description" -> description = text(parser);
+                case "price" -> price = value == JsonToken.VALUE_NULL ? 0 : parser.getValueAsDouble();
+                case "category" -> category = interned(parser);
+                case "tags" -> tags = tags(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "Expected a product object, got " + token);
+        }
+        return new ProductDocument(id != null ? id : sourceId, name, description, price, category, tags);
+    }
+
+    public static void write(ProductDocument product, JsonGenerator generator, boolean skipNulls) throws IOException {
+        generator.writeStartObject(product);
+        writeString(generator, ID, product.id(), skipNulls);
+        writeString(generator, NAME, product.name(), skipNulls);
+        writeString(generator, DESCRIPTION, product.description(), skipNulls);
+        generator.writeFieldName(PRICE);
+        generator.writeNumber(product.price());
+        writeString(generator, CATEGORY, product.category(), skipNulls);
+        List<String> tags = product.tags();
+        if (tags != null) {
+            generator.writeFieldName(TAGS);
+            generator.writeStartArray(tags, tags.size());
+            for (String tag : tags) {
+                generator.writeString(tag);
+            }
+            generator.writeEndArray();
+        } else if (!skipNulls) {
+            generator.writeFieldName(TAGS);
+            generator.writeNull();
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator generator, SerializableString field, String value, boolean skipNulls)
+        throws IOException {
+        if (value != null) {
+            generator.writeFieldName(field);
+            generator.writeString(value);
+        } else if (!skipNulls) {
+            generator.writeFieldName(field);
+            generator.writeNull();
+        }
+    }
+
+    private static String text(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+    }
+
+    private static List<String> tags(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            String tag = interned(parser); // a single tag, as Elasticsearch accepts it
+            return tag == null ? List.of() : List.of(tag);
+        }
+        String[] tags = new String[4];
+        int count = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            String tag = interned(parser);
+            if (tag == null) {
+                continue;
+            }
+            if (count == tags.length) {
+                tags = Arrays.copyOf(tags, count * 2);
+            }
+            tags[count++] = tag;
+        }
+        return List.of(count == tags.length ? tags : Arrays.copyOf(tags, count));
+    }
+
+    static String interned(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            return text(parser);
+        }
+        int length = parser.getTextLength();
+        if (length > MAX_INTERNED_LENGTH) {
+            return parser.getText();
+        }
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (INTERN_SLOTS - 1);
+        String candidate = INTERNED[slot];
+        if (candidate != null && equals(candidate, chars, offset, length)) {
+            return candidate;
+        }
+        String value = new String(chars, offset, length);
+        INTERNED[slot] = value;
+        return value;
+    }
+
+    private static boolean equals(String value, char[] chars, int offset, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static final class Deserializer extends StdDeserializer<ProductDocument> {
+
+        public Deserializer() {
+            super(ProductDocument.class);
+        }
+
+        @Override
+        public ProductDocument deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return read(parser, null);
+        }
+    }
+
+    public static final class Serializer extends StdSerializer<ProductDocument> {
+
+        public Serializer() {
+            super(ProductDocument.class);
+        }
+
+        @Override
+        public void serialize(ProductDocument product, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            // The Elasticsearch client's mapper leaves out nulls, Spring's default mapper writes them
+            JsonInclude.Include inclusion = provider.getConfig().getDefaultPropertyInclusion(ProductDocument.class).getValueInclusion();
+            write(product, generator, inclusion != JsonInclude.Include.ALWAYS && inclusion != JsonInclude.Include.USE_DEFAULTS);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.elasticsearchreactivedemo.model;
+
+import java.util.List;
+
+// Structured search criteria; everything except the free-text query is applied in filter context, which
+// Elasticsearch does not score and can cache across requests
+public record ProductFilter(String query, String category, List<String> tags, Double minPrice, Double maxPrice) {
+
+    public ProductFilter {
+        tags = tags == null ? List.of() : tags;
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new IllegalArgumentException("minPrice must not be greater than maxPrice");
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.elasticsearchreactivedemo.model;
+
+import java.util.List;
+
+// Body of POST /api/v1/products/_mget, mirroring Elasticsearch's {"ids": [...]}
+public record ProductIdsRequest(List<String> ids) {
+
+    public ProductIdsRequest {
+        ids = ids == null ? List.of() : ids;
+    }
+}
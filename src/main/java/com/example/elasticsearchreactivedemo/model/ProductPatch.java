@@ -0,0 +1,50 @@
+package com.example.elasticsearchreactivedemo.model;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Body of PATCH /api/v1/products/{id} and one line of the bulk PATCH: only the fields present are sent to
+// Elasticsearch as a partial document, everything else keeps its stored value. A field cannot be cleared this
+// way, null means "unchanged". The id is only read from bulk lines; the single PATCH takes it from the path.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProductPatch(String id, String name, String description, Double price, String category, List<String> tags) {
+
+    public ProductPatch withId(String id) {
+        return new ProductPatch(id, name, description, price, category, tags);
+    }
+
+    // The fields to change, without the id
+    public Map<String, Object> fields() {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        putIfPresent(fields, "name", name);
+        putIfPresent(fields, "description", description);
+        putIfPresent(fields, "price", price);
+        putIfPresent(fields, "category", category);
+        putIfPresent(fields, "tags", tags);
+        return fields;
+    }
+
+    private static void putIfPresent(Map<String, Object> fields, String name, Object value) {
+        if (value != null) {
+            fields.put(name, value);
+        }
+    }
+
+    // Rough payload size for bulk batching, like ProductBulkIngester.estimateSize
+    public int estimateSize() {
+        int size = 128 + length(id) + length(name) + length(description) + length(category);
+        if (tags != null) {
+            for (String tag : tags) {
+                size += length(tag) + 3;
+            }
+        }
+        return size;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
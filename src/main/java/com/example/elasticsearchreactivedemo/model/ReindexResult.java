@@ -0,0 +1,7 @@
+package com.example.elasticsearchreactivedemo.model;
+
+import java.util.List;
+
+// Response of POST /api/v1/products/_reindex
+public record ReindexResult(String index, List<String> previousIndices, BulkIngestResult loaded, long tookMillis) {
+}
@@ -0,0 +1,10 @@
+package com.example.elasticsearchreactivedemo.model;
+
+// One entry of GET /api/v1/products/suggest; weight is the number of products carrying the name or tag
+public record Suggestion(String text, Type type, int weight) {
+
+    public enum Type {
+        name,
+        tag
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.elasticsearchreactivedemo.model;
+
+// Returned when a by-query task is submitted; progress is at /api/v1/products/_tasks/{taskId}
+public record TaskHandle(String taskId) {
+}
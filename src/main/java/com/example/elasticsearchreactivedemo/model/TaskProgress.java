@@ -0,0 +1,8 @@
+package com.example.elasticsearchreactivedemo.model;
+
+// State of a by-query task as streamed by GET /api/v1/products/_tasks/{taskId}. Counts are summed over the
+// task's slices; remaining is what is left of total, failed the documents Elasticsearch could not write.
+public record TaskProgress(String taskId, String action, boolean completed, long total, long created, long updated,
+                           long deleted, long versionConflicts, long noops, long failed, long remaining,
+                           float requestsPerSecond, String error) {
+}
@@ -0,0 +1,6 @@
+package com.example.elasticsearchreactivedemo.model;
+
+// A product as stored after a write or read, with the version to send as If-Match on the next conditional write.
+// version is null when it is not known, e.g. for a write still waiting in the write-behind log.
+public record VersionedProduct(ProductDocument product, DocumentVersion version) {
+}
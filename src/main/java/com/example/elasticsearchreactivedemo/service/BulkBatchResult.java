@@ -0,0 +1,17 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.util.List;
+
+import com.example.elasticsearchreactivedemo.model.BulkIngestResult;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+
+// Outcome of a single _bulk request, including the items that needed per-item retries
+public record BulkBatchResult(List<ProductDocument> indexed, List<Failure> failures, int retried) {
+
+    public record Failure(String id, int status, String reason) {
+    }
+
+    public BulkIngestResult addTo(BulkIngestResult total) {
+        return total.add(indexed.size(), failures.size(), retried);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryResponse;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpSerializable;
+import co.elastic.clients.json.JsonpUtils;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+// Single entry point for Elasticsearch calls. Both clients expose the same request/response API, so callers
+// pass the same call twice and the configured mode decides whether it runs blocking on boundedElastic or
+// through the async client, completing on the HTTP client's I/O threads without a thread handoff.
+// Raw calls go through the low-level RestClient underneath both, for responses that are streamed rather than decoded.
+// Every call is timed per operation: client-side latency, server-side took, scheduler queue wait and result size.
+// Calls first take a permit from the ElasticsearchLimiter, so an overloaded cluster fails requests fast instead
+// of letting them pile up on boundedElastic or in the HTTP client's connection queue.
+@Component
+@Slf4j
+public class ElasticsearchExecutor {
+
+    public enum Mode {
+        BLOCKING,
+        ASYNC
+    }
+
+    @FunctionalInterface
+    public interface BlockingCall<T> {
+        T call(ElasticsearchClient client) throws IOException;
+    }
+
+    private final ElasticsearchClient client;
+    private final ElasticsearchAsyncClient asyncClient;
+    private final RestClient restClient;
+    private final Mode mode;
+    private final MeterRegistry meterRegistry;
+    private final ElasticsearchLimiter limiter;
+
+    @Autowired
+    public ElasticsearchExecutor(ElasticsearchClient client, ElasticsearchAsyncClient asyncClient, RestClient restClient,
+                                 @Value("${elasticsearch.client.mode:async}") Mode mode,
+                                 MeterRegistry meterRegistry, ElasticsearchLimiter limiter) {
+        this.client = client;
+        this.asyncClient = asyncClient;
+        this.restClient = restClient;
+        this.mode = mode;
+        this.meterRegistry = meterRegistry;
+        this.limiter = limiter;
+        log.info("Elasticsearch client mode: {}", mode);
+    }
+
+    // Without concurrency limits
+    public ElasticsearchExecutor(ElasticsearchClient client, ElasticsearchAsyncClient asyncClient, RestClient restClient,
+                                 Mode mode, MeterRegistry meterRegistry) {
+        this(client, asyncClient, restClient, mode, meterRegistry, ElasticsearchLimiter.unlimited());
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    // operation names the request in metrics, e.g. "search" or "bulk"
+    public <T> Mono<T> execute(String operation, BlockingCall<T> blocking,
+                               Function<ElasticsearchAsyncClient, CompletableFuture<T>> async) {
+        // Cancelling the Mono aborts the underlying HTTP request
+        return execute(operation, false, () -> blocking.call(client),
+            () -> Mono.fromFuture(() -> async.apply(asyncClient)));
+    }
+
+    // For work the application starts itself: waits for a concurrency permit instead of failing when the limit is
+    // reached, so a scan, bulk load or write-behind drain slows down under load rather than aborting halfway
+    public <T> Mono<T> executeBackground(String operation, BlockingCall<T> blocking,
+                                         Function<ElasticsearchAsyncClient, CompletableFuture<T>> async) {
+        return execute(operation, true, () -> blocking.call(client),
+            () -> Mono.fromFuture(() -> async.apply(asyncClient)));
+    }
+
+    // A request whose body is serialized with the clients' mapper, e.g. a SearchRequest built with the usual builders
+    public Request rawRequest(String method, String endpoint, JsonpSerializable body) {
+        Request request = new Request(method, endpoint);
+        request.setJsonEntity(JsonpUtils.toJsonString(body, client._jsonpMapper()));
+        return request;
+    }
+
+    // The response entity is fully received (and decompressed) but not parsed; non-2xx statuses are errors
+    public Mono<Response> executeRaw(String operation, Request request) {
+        return execute(operation, false, () -> restClient.performRequest(request), () -> Mono.create(sink -> {
+            Cancellable cancellable = restClient.performRequestAsync(request, new ResponseListener() {
+                @Override
+                public void onSuccess(Response response) {
+                    sink.success(response);
+                }
+
+                @Override
+                public void onFailure(Exception exception) {
+                    sink.error(exception);
+                }
+            });
+            sink.onCancel(cancellable::cancel);
+        }));
+    }
+
+    private <T> Mono<T> execute(String operation, boolean wait, Callable<T> blocking, Supplier<Mono<T>> async) {
+        Mono<ElasticsearchLimiter.Permit> permit = wait
+            ? limiter.await(operation)
+            : Mono.fromCallable(() -> limiter.acquire(operation));
+        return permit.flatMap(p -> execute(operation, p, blocking, async));
+    }
+
+    private <T> Mono<T> execute(String operation, ElasticsearchLimiter.Permit permit, Callable<T> blocking,
+                                Supplier<Mono<T>> async) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Mono<T> call;
+            if (mode == Mode.ASYNC) {
+                call = async.get();
+            } else {
+                call = Mono.fromCallable(() -> {
+                        queueWaitTimer(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        return blocking.call();
+                    })
+                    .subscribeOn(Schedulers.boundedElastic()); // Offload blocking IO call
+            }
+            return call
+                .doOnNext(response -> recordResponse(operation, response))
+                .doOnSuccess(response -> permit.release(System.nanoTime() - start, null))
+                .doOnError(error -> permit.release(System.nanoTime() - start, error))
+                .doOnCancel(permit::cancel)
+                .doFinally(signal -> requestTimer(operation, signal)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private void recordResponse(String operation, Object response) {
+        long took = -1;
+        long size = -1;
+        if (response instanceof SearchResponse<?> search) {
+            took = search.took();
+            size = search.hits().hits().size();
+        } else if (response instanceof BulkResponse bulk) {
+            took = bulk.took();
+            size = bulk.items().size();
+        } else if (response instanceof DeleteByQueryResponse deleteByQuery) {
+            took = deleteByQuery.took() != null ? deleteByQuery.took() : -1;
+            size = deleteByQuery.deleted() != null ? deleteByQuery.deleted() : -1;
+        } else if (response instanceof MgetResponse<?> mget) {
+            size = mget.docs().size();
+        }
+        recordResult(operation, took, size);
+    }
+
+    // For raw responses, which are parsed by the caller; -1 for what the response did not include
+    public void recordResult(String operation, long took, long size) {
+        if (took >= 0) {
+            Timer.builder("elasticsearch.server.took")
+                .description("Server-side processing time reported in the response's took field")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(took, TimeUnit.MILLISECONDS);
+        }
+        if (size >= 0) {
+            DistributionSummary.builder("elasticsearch.client.result.size")
+                .description("Hits, documents or items in the response")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(size);
+        }
+    }
+
+    private Timer requestTimer(String operation, SignalType signal) {
+        String outcome = switch (signal) {
+            case ON_ERROR -> "error";
+            case CANCEL -> "cancelled";
+            default -> "success";
+        };
+        return Timer.builder("elasticsearch.client.requests")
+            .description("Client-side latency of Elasticsearch requests, including queueing and the HTTP round trip")
+            .tags("operation", operation, "mode", mode.name().toLowerCase(), "outcome", outcome)
+            .register(meterRegistry);
+    }
+
+    private Timer queueWaitTimer(String operation) {
+        return Timer.builder("elasticsearch.client.queue.wait")
+            .description("Time blocking calls wait for a boundedElastic worker")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+}
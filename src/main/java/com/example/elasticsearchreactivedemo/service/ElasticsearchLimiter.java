@@ -0,0 +1,367 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.client.ResponseException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+// Adaptive concurrency limits for Elasticsearch requests, one budget for reads and one for writes, so a flood of
+// one cannot starve the other. Each limit follows AIMD: it grows by one per limit's worth of requests that
+// complete in time and shrinks by backoff-ratio when the recent latency of an operation rises well above its
+// long-term latency, or when requests time out or are rejected by the cluster; at most once per limit's worth
+// of requests, so one slow burst does not collapse it. Requests beyond the limit fail immediately instead of queueing
+// behind a slow cluster, so callers see a 503 with Retry-After rather than a timeout. Work the application starts
+// itself (scans, bulk loads, mirroring into a reindex, draining the write-behind log) awaits a permit instead:
+// failing it would abort an export or a reload halfway, or lose a write that the API already acknowledged.
+// Released permits go to waiting work first, in arrival order.
+// Only the per-request data path is limited; index administration, refreshes, by-query submissions and task
+// polling are rare or long-running by design, and their latency says nothing about the cluster's capacity.
+@Component
+@Slf4j
+public class ElasticsearchLimiter {
+
+    public enum Budget {
+        READ,
+        WRITE
+    }
+
+    // Operation names as passed to ElasticsearchExecutor
+    private static final Set<String> READ_OPERATIONS = Set.of("get", "mget", "search", "scan");
+    private static final Set<String> WRITE_OPERATIONS = Set.of("index", "update", "delete", "bulk");
+
+    // Returned by acquire; exactly one of release or cancel must follow
+    public interface Permit {
+
+        void release(long latencyNanos, Throwable error);
+
+        void cancel();
+    }
+
+    private static final Permit UNLIMITED = new Permit() {
+        @Override
+        public void release(long latencyNanos, Throwable error) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final boolean enabled;
+    private final Duration retryAfter;
+    private final AimdLimit read;
+    private final AimdLimit write;
+
+    public ElasticsearchLimiter(@Value("${elasticsearch.limiter.enabled:true}") boolean enabled,
+                                @Value("${elasticsearch.limiter.read.initial-limit:20}") int readInitialLimit,
+                                @Value("${elasticsearch.limiter.read.max-limit:200}") int readMaxLimit,
+                                @Value("${elasticsearch.limiter.write.initial-limit:10}") int writeInitialLimit,
+                                @Value("${elasticsearch.limiter.write.max-limit:50}") int writeMaxLimit,
+                                @Value("${elasticsearch.limiter.min-limit:2}") int minLimit,
+                                @Value("${elasticsearch.limiter.backoff-ratio:0.9}") double backoffRatio,
+                                // Recent latency above this multiple of the long-term latency counts as a sign of overload
+                                @Value("${elasticsearch.limiter.latency-tolerance:2.0}") double latencyTolerance,
+                                @Value("${elasticsearch.limiter.retry-after:1s}") Duration retryAfter,
+                                MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.retryAfter = retryAfter;
+        this.read = new AimdLimit(Budget.READ, readInitialLimit, minLimit, readMaxLimit, backoffRatio, latencyTolerance, meterRegistry);
+        this.write = new AimdLimit(Budget.WRITE, writeInitialLimit, minLimit, writeMaxLimit, backoffRatio, latencyTolerance, meterRegistry);
+        if (enabled) {
+            log.info("Elasticsearch concurrency limits: reads {} (max {}), writes {} (max {})",
+                readInitialLimit, readMaxLimit, writeInitialLimit, writeMaxLimit);
+        }
+    }
+
+    // No limits, e.g. for tests and benchmarks that construct an executor directly
+    public static ElasticsearchLimiter unlimited() {
+        return new ElasticsearchLimiter(false, 1, 1, 1, 1, 1, 0.9, 2.0, Duration.ZERO, new SimpleMeterRegistry());
+    }
+
+    // Null for operations that are not limited
+    public static Budget budgetOf(String operation) {
+        return READ_OPERATIONS.contains(operation) ? Budget.READ
+            : WRITE_OPERATIONS.contains(operation) ? Budget.WRITE
+            : null;
+    }
+
+    public int limit(Budget budget) {
+        return limitOf(budget).limit();
+    }
+
+    // Throws ElasticsearchOverloadedException when the operation's budget is used up
+    public Permit acquire(String operation) {
+        Budget budget = budgetOf(operation);
+        if (!enabled || budget == null) {
+            return UNLIMITED;
+        }
+        AimdLimit limit = limitOf(budget);
+        if (!limit.tryAcquire()) {
+            limit.rejected.increment();
+            throw new ElasticsearchOverloadedException("Too many concurrent Elasticsearch " + limit.budget.name().toLowerCase()
+                + "s (limit " + limit.limit() + "), rejected " + operation, retryAfter);
+        }
+        return new LimitPermit(limit, operation);
+    }
+
+    // Completes with a permit once the operation's budget has room, instead of failing
+    public Mono<Permit> await(String operation) {
+        Budget budget = budgetOf(operation);
+        if (!enabled || budget == null) {
+            return Mono.just(UNLIMITED);
+        }
+        AimdLimit limit = limitOf(budget);
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(new LimitPermit(limit, operation), sink);
+            if (limit.acquireOrWait(waiter)) {
+                sink.success(waiter.permit);
+            } else {
+                sink.onCancel(waiter::cancel);
+            }
+        });
+    }
+
+    // Returns its slot at most once, however often release or cancel are called
+    private static final class LimitPermit implements Permit {
+
+        private final AimdLimit limit;
+        private final String operation;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        LimitPermit(AimdLimit limit, String operation) {
+            this.limit = limit;
+            this.operation = operation;
+        }
+
+        @Override
+        public void release(long latencyNanos, Throwable error) {
+            if (done.compareAndSet(false, true)) {
+                limit.release(operation, latencyNanos, error);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (done.compareAndSet(false, true)) {
+                limit.cancel();
+            }
+        }
+    }
+
+    private static final class Waiter {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final LimitPermit permit;
+        private final MonoSink<Permit> sink;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Waiter(LimitPermit permit, MonoSink<Permit> sink) {
+            this.permit = permit;
+            this.sink = sink;
+        }
+
+        // Called with the limit's lock held; false if the waiter was cancelled meanwhile
+        boolean grant() {
+            return state.compareAndSet(WAITING, GRANTED);
+        }
+
+        void deliver() {
+            sink.success(permit);
+        }
+
+        void cancel() {
+            if (state.compareAndSet(WAITING, CANCELLED)) {
+                permit.limit.removeWaiter(this);
+            } else {
+                permit.cancel(); // granted but no longer wanted; a no-op if it was already used
+            }
+        }
+    }
+
+    private AimdLimit limitOf(Budget budget) {
+        return budget == Budget.READ ? read : write;
+    }
+
+    // Timeouts and the cluster's own rejections, as opposed to errors that say nothing about its load
+    static boolean isOverload(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof TimeoutException || e instanceof SocketTimeoutException) {
+                return true;
+            }
+            int status = e instanceof ElasticsearchException es ? es.status()
+                : e instanceof ResponseException re ? re.getResponse().getStatusLine().getStatusCode()
+                : -1;
+            if (status == 429 || status == 503 || status == 504) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static final class AimdLimit {
+
+        // Weight of a new sample in the recent and the long-term latency
+        private static final double SHORT_SMOOTHING = 0.1;
+        private static final double LONG_SMOOTHING = 0.01;
+
+        private static final class Latency {
+            double recent;
+            double longTerm;
+        }
+
+        private final Budget budget;
+        private final int minLimit;
+        private final int maxLimit;
+        private final double backoffRatio;
+        private final double latencyTolerance;
+        private final Counter rejected;
+
+        // Guarded by this
+        private double limit;
+        private int inFlight;
+        private int sinceDecrease;
+        private final Deque<Waiter> waiters = new ArrayDeque<>();
+        // Per operation, since e.g. a bulk request takes far longer than a single index request
+        private final Map<String, Latency> latencies = new HashMap<>();
+
+        AimdLimit(Budget budget, int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                  double latencyTolerance, MeterRegistry meterRegistry) {
+            this.budget = budget;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.backoffRatio = backoffRatio;
+            this.latencyTolerance = latencyTolerance;
+            this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+            String type = budget.name().toLowerCase();
+            Gauge.builder("elasticsearch.client.limit", this, AimdLimit::limit)
+                .description("Current adaptive concurrency limit")
+                .tag("budget", type)
+                .register(meterRegistry);
+            Gauge.builder("elasticsearch.client.in.flight", this, AimdLimit::inFlight)
+                .description("Requests holding a permit of the budget")
+                .tag("budget", type)
+                .register(meterRegistry);
+            this.rejected = Counter.builder("elasticsearch.client.rejected")
+                .description("Requests refused because the concurrency limit was reached")
+                .tag("budget", type)
+                .register(meterRegistry);
+            Gauge.builder("elasticsearch.client.waiting", this, AimdLimit::waiting)
+                .description("Background requests waiting for a permit of the budget")
+                .tag("budget", type)
+                .register(meterRegistry);
+        }
+
+        synchronized boolean tryAcquire() {
+            if (inFlight >= (int) limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        }
+
+        synchronized boolean acquireOrWait(Waiter waiter) {
+            if (tryAcquire()) {
+                return true;
+            }
+            waiters.add(waiter);
+            return false;
+        }
+
+        synchronized void removeWaiter(Waiter waiter) {
+            waiters.remove(waiter);
+        }
+
+        void release(String operation, long latencyNanos, Throwable error) {
+            List<Waiter> granted;
+            synchronized (this) {
+                record(operation, latencyNanos, error);
+                granted = grantWaiters();
+            }
+            granted.forEach(Waiter::deliver); // outside the lock, the waiter's request starts right away
+        }
+
+        void cancel() {
+            List<Waiter> granted;
+            synchronized (this) {
+                inFlight--;
+                granted = grantWaiters();
+            }
+            granted.forEach(Waiter::deliver);
+        }
+
+        // Guarded by this; hands the free slots to waiters
+        private List<Waiter> grantWaiters() {
+            List<Waiter> granted = new ArrayList<>();
+            while (inFlight < (int) limit && !waiters.isEmpty()) {
+                Waiter waiter = waiters.poll();
+                if (waiter.grant()) {
+                    inFlight++;
+                    granted.add(waiter);
+                }
+            }
+            return granted;
+        }
+
+        private void record(String operation, long latencyNanos, Throwable error) {
+            boolean wasSaturated = inFlight >= (int) limit / 2; // an idle budget says nothing about a higher limit
+            inFlight--;
+            sinceDecrease++;
+            Latency latency = latencies.get(operation);
+            if (error == null) {
+                if (latency == null) {
+                    latency = new Latency();
+                    latency.recent = latencyNanos;
+                    latency.longTerm = latencyNanos;
+                    latencies.put(operation, latency);
+                } else {
+                    latency.recent += SHORT_SMOOTHING * (latencyNanos - latency.recent);
+                    latency.longTerm += LONG_SMOOTHING * (latencyNanos - latency.longTerm);
+                }
+            }
+            boolean overloaded = error != null ? isOverload(error)
+                : latency.recent > latency.longTerm * latencyTolerance;
+            if (overloaded && sinceDecrease >= limit) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                sinceDecrease = 0;
+            } else if (!overloaded && wasSaturated) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+
+        synchronized int limit() {
+            return (int) limit;
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        synchronized int waiting() {
+            return waiters.size();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.time.Duration;
+
+// A request was refused before reaching Elasticsearch because its concurrency budget was used up; see ElasticsearchLimiter
+public class ElasticsearchOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ElasticsearchOverloadedException(String message, Duration retryAfter) {
+        super(message, null, false, false); // thrown at high rates under overload, a stack trace would only add cost
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+}
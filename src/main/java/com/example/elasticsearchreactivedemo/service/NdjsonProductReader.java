@@ -0,0 +1,137 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+
+// Incrementally parses an NDJSON body into products as the request's DataBuffers arrive. Only the current,
+// unfinished line is carried between buffers, so memory is bounded by max-line-size, not by the upload.
+// Each line is parsed on its own so a malformed line is reported with its number and the rest still loads.
+@Component
+public class NdjsonProductReader {
+
+    // product is a ProductDocument for imports and a ProductPatch for bulk partial updates
+    public record Line<T>(long number, T product, String error) {
+
+        public boolean isError() {
+            return error != null;
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final int maxLineBytes;
+
+    public NdjsonProductReader(ObjectMapper objectMapper,
+                               @Value("${elasticsearch.import.max-line-size:1MB}") DataSize maxLineSize) {
+        this.objectMapper = objectMapper;
+        this.maxLineBytes = (int) maxLineSize.toBytes();
+    }
+
+    public Flux<Line<ProductDocument>> read(Flux<DataBuffer> body) {
+        return read(body, ProductDocument.class);
+    }
+
+    public <T> Flux<Line<T>> read(Flux<DataBuffer> body, Class<T> type) {
+        return Flux.defer(() -> {
+            LineSplitter<T> splitter = new LineSplitter<>(type);
+            return body
+                .concatMapIterable(buffer -> {
+                    try {
+                        return splitter.split(buffer);
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                })
+                .concatWith(Flux.defer(() -> Flux.fromIterable(splitter.finish())));
+        });
+    }
+
+    private <T> Line<T> parse(long number, byte[] bytes, int length, Class<T> type) {
+        try {
+            return new Line<>(number, objectMapper.readValue(bytes, 0, length, type), null);
+        } catch (Exception e) {
+            return new Line<>(number, null, e.getMessage());
+        }
+    }
+
+    private static boolean isBlank(byte[] bytes, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!Character.isWhitespace(bytes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private class LineSplitter<T> {
+
+        private final Class<T> type;
+        private final ByteArrayOutputStream current = new ByteArrayOutputStream();
+        private long lineNumber;
+        private boolean oversized;
+
+        LineSplitter(Class<T> type) {
+            this.type = type;
+        }
+
+        List<Line<T>> split(DataBuffer buffer) {
+            List<Line<T>> lines = new ArrayList<>();
+            while (buffer.readableByteCount() > 0) {
+                int newline = buffer.indexOf(b -> b == '\n', buffer.readPosition());
+                int end = newline < 0 ? buffer.writePosition() : newline;
+                append(buffer, end - buffer.readPosition());
+                if (newline < 0) {
+                    break;
+                }
+                buffer.readPosition(newline + 1);
+                completeLine(lines);
+            }
+            return lines;
+        }
+
+        List<Line<T>> finish() {
+            List<Line<T>> lines = new ArrayList<>();
+            if (current.size() > 0 || oversized) {
+                completeLine(lines);
+            }
+            return lines;
+        }
+
+        private void append(DataBuffer buffer, int length) {
+            if (oversized || current.size() + length > maxLineBytes) {
+                // Drop the rest of the line but keep counting it
+                oversized = true;
+                buffer.readPosition(buffer.readPosition() + length);
+                return;
+            }
+            byte[] chunk = new byte[length];
+            buffer.read(chunk);
+            current.write(chunk, 0, length);
+        }
+
+        private void completeLine(List<Line<T>> lines) {
+            lineNumber++;
+            if (oversized) {
+                lines.add(new Line<>(lineNumber, null, "Line exceeds " + maxLineBytes + " bytes"));
+            } else {
+                byte[] bytes = current.toByteArray();
+                if (!isBlank(bytes, bytes.length)) {
+                    lines.add(parse(lineNumber, bytes, bytes.length, type));
+                }
+            }
+            current.reset();
+            oversized = false;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.ProductPatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Groups documents into _bulk requests and indexes them with a bounded number of requests in flight.
+// A batch is flushed when it reaches max-actions, max-bytes or the flush interval, whichever comes first.
+// Partial updates go through the same batching; their merged documents come back in the bulk response.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductBulkIngester {
+
+    private final ElasticsearchExecutor esExecutor;
+    private final ObjectMapper objectMapper;
+
+    @Value("${elasticsearch.index.name}")
+    private String indexName;
+
+    @Value("${elasticsearch.bulk.max-actions:1000}")
+    private int maxActions;
+
+    @Value("${elasticsearch.bulk.max-bytes:5MB}")
+    private DataSize maxBytes;
+
+    @Value("${elasticsearch.bulk.flush-interval:1s}")
+    private Duration flushInterval;
+
+    @Value("${elasticsearch.bulk.max-in-flight:4}")
+    private int maxInFlight;
+
+    @Value("${elasticsearch.bulk.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${elasticsearch.bulk.retry-backoff:200ms}")
+    private Duration retryBackoff;
+
+    @Value("${elasticsearch.update.retry-on-conflict:3}")
+    private int retryOnConflict;
+
+    // Where a batch goes; with createOnly, documents already present in the index are left alone
+    private record Target(String index, boolean createOnly) {
+    }
+
+    // One bulk action; product is null for a partial update until the merged document comes back
+    private record Op(String id, int size, BulkOperation operation, ProductDocument product) {
+    }
+
+    public Flux<BulkBatchResult> ingest(Flux<ProductDocument> products) {
+        return ingest(products, indexName, false);
+    }
+
+    // Into a specific index, e.g. one being built by a reindex. Create-only documents that already exist there
+    // (version conflicts) count as indexed, since the index holds a newer copy.
+    public Flux<BulkBatchResult> ingest(Flux<ProductDocument> products, String index, boolean createOnly) {
+        Target target = new Target(index, createOnly);
+        return execute(products.map(this::assignId).map(product -> indexOp(product, createOnly)), target);
+    }
+
+    // Partial updates of existing documents; a missing document is reported as a failure, not created.
+    // Elasticsearch retries an update that races with another write up to retry-on-conflict times.
+    public Flux<BulkBatchResult> update(Flux<ProductPatch> patches) {
+        return execute(patches.map(this::updateOp), new Target(indexName, false));
+    }
+
+    private Flux<BulkBatchResult> execute(Flux<Op> ops, Target target) {
+        return ops
+            // fair backpressure: only pull from upstream when a batch slot is free
+            .bufferTimeout(maxActions, flushInterval, true)
+            .concatMapIterable(this::splitBySize, 1)
+            .flatMap(batch -> indexBatch(batch, target), maxInFlight);
+    }
+
+    private static Op indexOp(ProductDocument product, boolean createOnly) {
+        BulkOperation operation = createOnly
+            ? BulkOperation.of(op -> op.create(c -> c.id(product.id()).document(product)))
+            : BulkOperation.of(op -> op.index(i -> i.id(product.id()).document(product)));
+        return new Op(product.id(), estimateSize(product), operation, product);
+    }
+
+    private Op updateOp(ProductPatch patch) {
+        BulkOperation operation = BulkOperation.of(op -> op.update(u -> u
+            .id(patch.id())
+            .retryOnConflict(retryOnConflict)
+            .action(a -> a.doc(patch).source(src -> src.fetch(true)))));
+        return new Op(patch.id(), patch.estimateSize(), operation, null);
+    }
+
+    private ProductDocument assignId(ProductDocument product) {
+        if (product.id() == null || product.id().isEmpty()) {
+            return product.withId(UUID.randomUUID().toString());
+        }
+        return product;
+    }
+
+    // Split a count/time bounded buffer further so no single request exceeds max-bytes
+    private List<List<Op>> splitBySize(List<Op> ops) {
+        List<List<Op>> batches = new ArrayList<>();
+        List<Op> current = new ArrayList<>();
+        long currentBytes = 0;
+        for (Op op : ops) {
+            if (!current.isEmpty() && currentBytes + op.size() > maxBytes.toBytes()) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(op);
+            currentBytes += op.size();
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    // Rough size of the action line plus the JSON source; avoids serializing every document twice
+    static int estimateSize(ProductDocument product) {
+        int size = 128;
+        size += length(product.id()) + length(product.name())
+            + length(product.description()) + length(product.category());
+        if (product.tags() != null) {
+            for (String tag : product.tags()) {
+                size += length(tag) + 3;
+            }
+        }
+        return size;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private Mono<BulkBatchResult> indexBatch(List<Op> batch, Target target) {
+        BatchState state = new BatchState();
+        return attempt(batch, target, 0, state).then(Mono.fromSupplier(state::toResult));
+    }
+
+    private Mono<Void> attempt(List<Op> ops, Target target, int attempt, BatchState state) {
+        return executeBulk(ops, target)
+            .map(response -> collectRetries(ops, response, target, attempt, state))
+            .onErrorResume(e -> {
+                if (attempt < maxRetries) {
+                    log.warn("Bulk request of {} documents failed (attempt {}), retrying: {}", ops.size(), attempt + 1, e.getMessage());
+                    return Mono.just(ops);
+                }
+                log.error("Bulk request of {} documents failed after {} attempts", ops.size(), attempt + 1, e);
+                ops.forEach(p -> state.failures.add(new BulkBatchResult.Failure(p.id(), 0, e.getMessage())));
+                return Mono.just(List.of());
+            })
+            .flatMap(retry -> {
+                if (retry.isEmpty()) {
+                    return Mono.empty();
+                }
+                state.retried += retry.size();
+                return Mono.delay(retryBackoff.multipliedBy(1L << attempt))
+                    .then(attempt(retry, target, attempt + 1, state));
+            });
+    }
+
+    private Mono<BulkResponse> executeBulk(List<Op> ops, Target target) {
+        BulkRequest.Builder builder = new BulkRequest.Builder().index(target.index());
+        ops.forEach(op -> builder.operations(op.operation()));
+        BulkRequest request = builder.build();
+        return esExecutor.executeBackground("bulk", c -> c.bulk(request), c -> c.bulk(request))
+            .doOnNext(response -> log.debug("Bulk indexed {} documents in {} ms, errors: {}",
+                ops.size(), response.took(), response.errors()));
+    }
+
+    // Items come back in request order; returns the documents that should be retried
+    private List<Op> collectRetries(List<Op> ops, BulkResponse response,
+                                    Target target, int attempt, BatchState state) {
+        List<Op> retry = new ArrayList<>();
+        List<BulkResponseItem> items = response.items();
+        for (int i = 0; i < items.size(); i++) {
+            BulkResponseItem item = items.get(i);
+            Op op = ops.get(i);
+            if (item.error() == null || (target.createOnly() && item.status() == 409)) {
+                state.indexed.add(op.product() != null ? op.product() : updatedDocument(item));
+            } else if (isRetryable(item.status()) && attempt < maxRetries) {
+                retry.add(op);
+            } else {
+                log.warn("Failed to index document {}: {} {}", item.id(), item.status(), item.error().reason());
+                state.failures.add(new BulkBatchResult.Failure(item.id(), item.status(), item.error().reason()));
+            }
+        }
+        return retry;
+    }
+
+    // The update's merged _source, returned because the update asked for it
+    private ProductDocument updatedDocument(BulkResponseItem item) {
+        Map<String, Object> source = new HashMap<>();
+        item.get().source().forEach((field, value) -> source.put(field, value.to(Object.class)));
+        return objectMapper.convertValue(source, ProductDocument.class).withId(item.id());
+    }
+
+    // Rejections and temporary unavailability are worth retrying; mapping errors and conflicts are not
+    static boolean isRetryable(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    private static class BatchState {
+        final List<ProductDocument> indexed = new ArrayList<>();
+        final List<BulkBatchResult.Failure> failures = new ArrayList<>();
+        int retried;
+
+        BulkBatchResult toResult() {
+            return new BulkBatchResult(indexed, failures, retried);
+        }
+    }
+}
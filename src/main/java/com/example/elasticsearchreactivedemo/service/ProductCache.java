@@ -0,0 +1,81 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.elasticsearchreactivedemo.model.VersionedProduct;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+// Bounded read-through cache for getProductById. Concurrent misses for the same ID share one load, and
+// hit/miss/eviction counts are published as cache.* metrics under cache=products.by-id. Documents are held with
+// their version, so a cached GET still answers with an ETag.
+@Component
+@Slf4j
+public class ProductCache {
+
+    private final AsyncCache<String, VersionedProduct> cache;
+    private final boolean enabled;
+
+    public ProductCache(@Value("${elasticsearch.cache.by-id.enabled:true}") boolean enabled,
+                        @Value("${elasticsearch.cache.by-id.maximum-size:10000}") long maximumSize,
+                        @Value("${elasticsearch.cache.by-id.ttl:5m}") Duration ttl,
+                        MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products.by-id");
+    }
+
+    public Mono<VersionedProduct> get(String id, Function<String, Mono<VersionedProduct>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        // An empty load completes with null, which Caffeine does not cache, so misses are never pinned.
+        // Cancellation is suppressed because the load is shared with other callers.
+        return Mono.fromFuture(() -> cache.get(id, (key, executor) -> loader.apply(key).toFuture()), true);
+    }
+
+    // Only an already cached document; never triggers a load
+    public Mono<VersionedProduct> getIfPresent(String id) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            CompletableFuture<VersionedProduct> cached = cache.getIfPresent(id);
+            return cached == null ? Mono.empty() : Mono.fromFuture(cached, true);
+        });
+    }
+
+    public void put(VersionedProduct product) {
+        if (enabled) {
+            cache.put(product.product().id(), CompletableFuture.completedFuture(product));
+        }
+    }
+
+    public void invalidate(String id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    // For tests; runs pending evictions first
+    long size() {
+        cache.synchronous().cleanUp();
+        return cache.synchronous().estimatedSize();
+    }
+}
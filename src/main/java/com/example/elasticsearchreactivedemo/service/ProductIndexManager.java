@@ -0,0 +1,269 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.client.Request;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+import co.elastic.clients.elasticsearch.indices.PutIndexTemplateRequest;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+// Owns the product index definition: an index template with the explicit mappings in
+// elasticsearch/product-mappings.json plus shard, replica and refresh settings. The template matches the index
+// name and "<name>-*", so any index created for products, explicitly or by a first write, gets the same mappings.
+// elasticsearch.index.name is an alias in front of a timestamped physical index, so a reindex can build a
+// replacement and swap it in atomically; indices created before that remain concrete until their first reindex.
+@Component
+@Slf4j
+public class ProductIndexManager {
+
+    // Bump whenever product-mappings.json or the template settings change, so running clusters pick up the update
+    static final long TEMPLATE_VERSION = 1;
+
+    private static final DateTimeFormatter INDEX_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final ElasticsearchExecutor esExecutor;
+    private final ProductTasks tasks;
+    private final ObjectMapper objectMapper;
+    private final Resource mappingsResource;
+
+    @Value("${elasticsearch.index.name}")
+    private String indexName;
+
+    @Value("${elasticsearch.index.shards:1}")
+    private int shards;
+
+    @Value("${elasticsearch.index.replicas:1}")
+    private int replicas;
+
+    @Value("${elasticsearch.index.refresh-interval:1s}")
+    private String refreshInterval;
+
+    public ProductIndexManager(ElasticsearchExecutor esExecutor, ProductTasks tasks, ObjectMapper objectMapper,
+                               @Value("classpath:elasticsearch/product-mappings.json") Resource mappingsResource) {
+        this.esExecutor = esExecutor;
+        this.tasks = tasks;
+        this.objectMapper = objectMapper;
+        this.mappingsResource = mappingsResource;
+    }
+
+    public String templateName() {
+        return indexName + "-template";
+    }
+
+    // Installs the template unless the cluster already has this version; returns whether it was written
+    public Mono<Boolean> putTemplate() {
+        return installedTemplateVersion()
+            .flatMap(installed -> {
+                if (installed == TEMPLATE_VERSION) {
+                    return Mono.just(false);
+                }
+                log.info("Installing index template {} version {} (found {})", templateName(), TEMPLATE_VERSION,
+                    installed < 0 ? "none" : installed);
+                PutIndexTemplateRequest request = PutIndexTemplateRequest.of(t -> t
+                    .name(templateName())
+                    .indexPatterns(indexName, indexName + "-*")
+                    .version(TEMPLATE_VERSION)
+                    .template(template -> template
+                        .settings(s -> s
+                            .numberOfShards(String.valueOf(shards))
+                            .numberOfReplicas(String.valueOf(replicas))
+                            .refreshInterval(r -> r.time(refreshInterval)))
+                        .mappings(mappings())));
+                return esExecutor.execute("put_index_template",
+                        c -> c.indices().putIndexTemplate(request),
+                        c -> c.indices().putIndexTemplate(request))
+                    .thenReturn(true);
+            });
+    }
+
+    private Mono<Long> installedTemplateVersion() {
+        return esExecutor.execute("exists_index_template",
+                c -> c.indices().existsIndexTemplate(e -> e.name(templateName())),
+                c -> c.indices().existsIndexTemplate(e -> e.name(templateName())))
+            .flatMap(exists -> !exists.value() ? Mono.just(-1L) : esExecutor.execute("get_index_template",
+                    c -> c.indices().getIndexTemplate(g -> g.name(templateName())),
+                    c -> c.indices().getIndexTemplate(g -> g.name(templateName())))
+                .map(response -> response.indexTemplates().stream()
+                    .map(t -> t.indexTemplate().version())
+                    .filter(v -> v != null)
+                    .findFirst()
+                    .orElse(-1L)));
+    }
+
+    public String newIndexName() {
+        return indexName + "-" + INDEX_SUFFIX.format(ZonedDateTime.now(ZoneOffset.UTC));
+    }
+
+    // Creates a physical index from the template behind the alias, unless the alias (or a concrete index with its
+    // name) exists; returns whether it was created
+    public Mono<Boolean> createIndexIfMissing() {
+        String physicalIndex = newIndexName();
+        return esExecutor.execute("exists_index",
+                c -> c.indices().exists(e -> e.index(indexName)),
+                c -> c.indices().exists(e -> e.index(indexName)))
+            .flatMap(exists -> exists.value() ? Mono.just(false) : esExecutor.execute("create_index",
+                    c -> c.indices().create(r -> r.index(physicalIndex).aliases(indexName, a -> a.isWriteIndex(true))),
+                    c -> c.indices().create(r -> r.index(physicalIndex).aliases(indexName, a -> a.isWriteIndex(true))))
+                .doOnNext(created -> log.info("Created index {} with alias {}", physicalIndex, indexName))
+                .thenReturn(true)
+                // Another instance may have created it in the meantime
+                .onErrorResume(e -> e instanceof ElasticsearchException es
+                    && "resource_already_exists_exception".equals(es.error().type()), e -> Mono.just(false)));
+    }
+
+    // An index tuned for a bulk load: no replicas to copy every write to and no refreshes while loading
+    public Mono<Void> createBulkLoadIndex(String index) {
+        return esExecutor.execute("create_index",
+                c -> c.indices().create(r -> r.index(index)
+                    .settings(s -> s.numberOfReplicas("0").refreshInterval(t -> t.time("-1")))),
+                c -> c.indices().create(r -> r.index(index)
+                    .settings(s -> s.numberOfReplicas("0").refreshInterval(t -> t.time("-1")))))
+            .then();
+    }
+
+    // Makes a bulk-loaded index ready for serving. It is merged down to one segment before replicas are
+    // restored, so the merge runs once on the primary and replicas copy the merged segment.
+    public Mono<Void> finishBulkLoad(String index) {
+        return esExecutor.execute("refresh",
+                c -> c.indices().refresh(r -> r.index(index)),
+                c -> c.indices().refresh(r -> r.index(index)))
+            .then(esExecutor.execute("forcemerge",
+                c -> c.indices().forcemerge(f -> f.index(index).maxNumSegments(1L).waitForCompletion(false)),
+                c -> c.indices().forcemerge(f -> f.index(index).maxNumSegments(1L).waitForCompletion(false))))
+            .flatMap(response -> response.task() == null ? Mono.empty() : tasks.await(response.task()))
+            .then(esExecutor.execute("put_settings",
+                c -> c.indices().putSettings(p -> p.index(index)
+                    .settings(s -> s.numberOfReplicas(String.valueOf(replicas)).refreshInterval(t -> t.time(refreshInterval)))),
+                c -> c.indices().putSettings(p -> p.index(index)
+                    .settings(s -> s.numberOfReplicas(String.valueOf(replicas)).refreshInterval(t -> t.time(refreshInterval))))))
+            .then();
+    }
+
+    // Points the alias at index in one atomic update and returns the indices it pointed to before. A concrete
+    // index that still has the alias's name is deleted by the same update, as the name is needed for the alias,
+    // so it is not returned.
+    public Mono<List<String>> swapAlias(String index) {
+        return esExecutor.execute("exists_alias",
+                c -> c.indices().existsAlias(e -> e.name(indexName)),
+                c -> c.indices().existsAlias(e -> e.name(indexName)))
+            .flatMap(aliasExists -> aliasExists.value()
+                ? esExecutor.execute("get_alias",
+                        c -> c.indices().getAlias(g -> g.name(indexName)),
+                        c -> c.indices().getAlias(g -> g.name(indexName)))
+                    .map(response -> swap(index, List.copyOf(response.result().keySet()), false))
+                : esExecutor.execute("exists_index",
+                        c -> c.indices().exists(e -> e.index(indexName)),
+                        c -> c.indices().exists(e -> e.index(indexName)))
+                    .map(concrete -> swap(index, concrete.value() ? List.of(indexName) : List.of(), concrete.value())))
+            .flatMap(swap -> esExecutor.execute("update_aliases",
+                    c -> c.indices().updateAliases(u -> u.actions(swap.actions())),
+                    c -> c.indices().updateAliases(u -> u.actions(swap.actions())))
+                .doOnNext(response -> log.info("Alias {} now points to {} instead of {}", indexName, index, swap.previous()))
+                .thenReturn(swap.previous()));
+    }
+
+    private record Swap(List<Action> actions, List<String> previous) {
+    }
+
+    private Swap swap(String index, List<String> previous, boolean concrete) {
+        List<Action> actions = new ArrayList<>();
+        for (String old : previous) {
+            actions.add(concrete
+                ? Action.of(a -> a.removeIndex(r -> r.index(old)))
+                : Action.of(a -> a.remove(r -> r.index(old).alias(indexName))));
+        }
+        actions.add(Action.of(a -> a.add(add -> add.index(index).alias(indexName).isWriteIndex(true))));
+        if (concrete) {
+            log.info("Replacing concrete index {} with an alias of the same name", indexName);
+        }
+        return new Swap(actions, concrete ? List.of() : previous);
+    }
+
+    public Mono<Void> deleteIndices(List<String> indices) {
+        if (indices.isEmpty()) {
+            return Mono.empty();
+        }
+        return esExecutor.execute("delete_index",
+                c -> c.indices().delete(d -> d.index(indices).ignoreUnavailable(true)),
+                c -> c.indices().delete(d -> d.index(indices).ignoreUnavailable(true)))
+            .doOnNext(response -> log.info("Deleted indices {}", indices))
+            .then();
+    }
+
+    // Differences between the index's live mappings and product-mappings.json, e.g. fields that were mapped
+    // dynamically before the template existed. Only a reindex can fix those.
+    public Mono<List<String>> mappingDrift() {
+        Request request = new Request("GET", "/" + indexName + "/_mapping");
+        return esExecutor.executeRaw("get_mapping", request)
+            .map(response -> {
+                try (InputStream body = response.getEntity().getContent()) {
+                    JsonNode expected = expectedMappings();
+                    List<String> drift = new ArrayList<>();
+                    // Keyed by the physical index name, which differs from indexName when that is an alias
+                    for (Map.Entry<String, JsonNode> index : objectMapper.readTree(body).properties()) {
+                        diff("", expected, index.getValue().path("mappings"), drift);
+                    }
+                    return drift;
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot read mappings of " + indexName, e);
+                }
+            });
+    }
+
+    // Every setting in expected must be present with the same value; extra settings in actual are fine
+    private static void diff(String path, JsonNode expected, JsonNode actual, List<String> drift) {
+        for (Map.Entry<String, JsonNode> field : expected.properties()) {
+            String fieldPath = path.isEmpty() ? field.getKey() : path + "." + field.getKey();
+            JsonNode actualValue = actual.path(field.getKey());
+            if (field.getValue().isObject()) {
+                if (actualValue.isMissingNode()) {
+                    drift.add(fieldPath + " is missing");
+                } else {
+                    diff(fieldPath, field.getValue(), actualValue, drift);
+                }
+            } else if (!sameValue(field.getValue(), actualValue)) {
+                drift.add(fieldPath + " is " + (actualValue.isMissingNode() ? "unset" : actualValue.asText())
+                    + ", expected " + field.getValue().asText());
+            }
+        }
+    }
+
+    // Elasticsearch echoes some numbers back as doubles, e.g. a scaling_factor of 100 as 100.0
+    private static boolean sameValue(JsonNode expected, JsonNode actual) {
+        if (expected.isNumber() && actual.isNumber()) {
+            return expected.doubleValue() == actual.doubleValue();
+        }
+        return expected.asText().equals(actual.asText());
+    }
+
+    private JsonNode expectedMappings() throws IOException {
+        try (InputStream in = mappingsResource.getInputStream()) {
+            return objectMapper.readTree(in);
+        }
+    }
+
+    TypeMapping mappings() {
+        try (InputStream in = mappingsResource.getInputStream()) {
+            return TypeMapping.of(m -> m.withJson(in));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + mappingsResource, e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.elasticsearchreactivedemo.model.DocumentVersion;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.VersionedProduct;
+
+import co.elastic.clients.elasticsearch.core.MgetRequest;
+import co.elastic.clients.elasticsearch.core.get.GetResult;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+// Collects getProductById calls that arrive within a short window and resolves them with one _mget.
+// A batch is sent when the window elapses or max-batch-size lookups are waiting, whichever comes first.
+// A lookup cancelled before its batch is sent is dropped from it; one cancelled later just ignores the result.
+@Component
+@Slf4j
+public class ProductLookupBatcher {
+
+    private record Pending(String id, MonoSink<VersionedProduct> sink) {
+    }
+
+    private final ElasticsearchExecutor esExecutor;
+    private final ReadHedger hedger;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxBatchSize;
+
+    @Value("${elasticsearch.index.name}")
+    private String indexName;
+
+    private final Object lock = new Object();
+    // Guarded by lock; the timer belongs to the current batch and is disposed once that batch is sent or empty
+    private List<Pending> pending = new ArrayList<>();
+    private Disposable windowTimer;
+
+    public ProductLookupBatcher(ElasticsearchExecutor esExecutor,
+                                ReadHedger hedger,
+                                @Value("${elasticsearch.mget.enabled:true}") boolean enabled,
+                                @Value("${elasticsearch.mget.window:2ms}") Duration window,
+                                @Value("${elasticsearch.mget.max-batch-size:100}") int maxBatchSize) {
+        this.esExecutor = esExecutor;
+        this.hedger = hedger;
+        this.enabled = enabled;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Mono<VersionedProduct> get(String id) {
+        return Mono.create(sink -> {
+            Pending lookup = new Pending(id, sink);
+            sink.onCancel(() -> cancel(lookup));
+            enqueue(lookup);
+        });
+    }
+
+    private void cancel(Pending lookup) {
+        synchronized (lock) {
+            if (pending.removeIf(waiting -> waiting == lookup) && pending.isEmpty()) {
+                nextBatch(); // the next lookup opens a window of its own
+            }
+        }
+    }
+
+    private void enqueue(Pending lookup) {
+        List<Pending> ready = null;
+        synchronized (lock) {
+            pending.add(lookup);
+            if (pending.size() >= maxBatchSize) {
+                ready = nextBatch();
+            } else if (pending.size() == 1) {
+                // First lookup of a new batch opens the window
+                List<Pending> batch = pending;
+                windowTimer = Schedulers.parallel().schedule(() -> flush(batch), window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        if (ready != null) {
+            dispatch(ready);
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        List<Pending> ready;
+        synchronized (lock) {
+            if (pending != batch) {
+                return; // a timer that fired while its batch was being sent or dropped
+            }
+            windowTimer = null;
+            ready = nextBatch();
+        }
+        dispatch(ready);
+    }
+
+    // Guarded by lock; returns the current batch and starts an empty one
+    private List<Pending> nextBatch() {
+        if (windowTimer != null) {
+            windowTimer.dispose();
+            windowTimer = null;
+        }
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void dispatch(List<Pending> batch) {
+        List<String> ids = batch.stream().map(Pending::id).distinct().toList();
+        log.debug("Resolving {} lookups with one _mget of {} IDs", batch.size(), ids.size());
+        multiGet(ids).subscribe(
+            results -> batch.forEach(lookup -> {
+                MultiGetResponseItem<ProductDocument> item = results.get(lookup.id());
+                if (item != null && item.isFailure()) {
+                    lookup.sink().error(new RuntimeException("Failed to get document " + lookup.id() + ": "
+                        + item.failure().error().reason()));
+                } else {
+                    lookup.sink().success(item == null ? null : toDocument(item.result()));
+                }
+            }),
+            error -> batch.forEach(lookup -> lookup.sink().error(error)));
+    }
+
+    private Mono<Map<String, MultiGetResponseItem<ProductDocument>>> multiGet(List<String> ids) {
+        return hedger.hedge("mget", preference -> {
+                MgetRequest request = MgetRequest.of(m -> m.index(indexName).ids(ids).preference(preference));
+                return esExecutor.execute("mget",
+                    c -> c.mget(request, ProductDocument.class),
+                    c -> c.mget(request, ProductDocument.class));
+            })
+            .map(response -> {
+                Map<String, MultiGetResponseItem<ProductDocument>> byId = new HashMap<>();
+                for (MultiGetResponseItem<ProductDocument> item : response.docs()) {
+                    byId.put(item.isResult() ? item.result().id() : item.failure().id(), item);
+                }
+                return byId;
+            });
+    }
+
+    private static VersionedProduct toDocument(GetResult<ProductDocument> result) {
+        if (!result.found() || result.source() == null) {
+            return null;
+        }
+        // ES doesn't store the ID in the _source by default
+        return new VersionedProduct(result.source().withId(result.id()),
+            DocumentVersion.of(result.seqNo(), result.primaryTerm()));
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+// End-to-end timers for ProductService operations, including overlay and cache hits that never reach
+// Elasticsearch. The per-request breakdown (client latency, took, queue wait) is in ElasticsearchExecutor.
+@Component
+@RequiredArgsConstructor
+public class ProductMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public <T> Mono<T> timed(String operation, Mono<T> mono) {
+        return timed(operation, mono.flux()).singleOrEmpty();
+    }
+
+    public <T> Flux<T> timed(String operation, Flux<T> flux) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicLong results = new AtomicLong();
+            return flux
+                .doOnNext(value -> results.incrementAndGet())
+                .doFinally(signal -> record(operation, signal, System.nanoTime() - start, results.get()));
+        });
+    }
+
+    private void record(String operation, SignalType signal, long nanos, long results) {
+        String outcome = switch (signal) {
+            case ON_ERROR -> "error";
+            case CANCEL -> "cancelled";
+            default -> "success";
+        };
+        Timer.builder("products.operations")
+            .description("Latency of product operations as seen by the controller")
+            .tags("operation", operation, "outcome", outcome)
+            .register(meterRegistry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("products.operation.results")
+            .description("Documents returned per operation")
+            .tag("operation", operation)
+            .register(meterRegistry)
+            .record(results);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.elasticsearchreactivedemo.model.BulkIngestResult;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.ReindexResult;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+// Rebuilds the catalog into a fresh physical index while readers keep using the current one, then swaps the
+// alias. The new index is bulk loaded without replicas or refreshes, merged, given its serving settings and only
+// then made visible. Writes made meanwhile go to the live index as usual and are mirrored into the new one:
+// loaded documents are create-only, so they never overwrite a newer mirrored write, and deleted IDs are
+// remembered and deleted again after the load in case the load brought them back. Mirrored writes wait until the
+// new index is created, otherwise Elasticsearch would auto-create it from the template without the bulk-load
+// settings and the explicit creation would then fail.
+@Component
+@Slf4j
+public class ProductReindexer {
+
+    // created emits true once the index exists, false if the run was abandoned before that
+    private record Run(String index, Set<String> deleted, Sinks.One<Boolean> created) {
+
+        Mono<Void> whenCreated(Mono<Void> mirror) {
+            return created.asMono().flatMap(exists -> exists ? mirror : Mono.empty());
+        }
+    }
+
+    private final ProductIndexManager indexManager;
+    private final ProductBulkIngester bulkIngester;
+    private final ElasticsearchExecutor esExecutor;
+    private final AtomicReference<Run> running = new AtomicReference<>();
+
+    @Value("${elasticsearch.index.name}")
+    private String indexName;
+
+    @Value("${elasticsearch.reindex.delete-previous:true}")
+    private boolean deletePrevious;
+
+    public ProductReindexer(ProductIndexManager indexManager, ProductBulkIngester bulkIngester, ElasticsearchExecutor esExecutor) {
+        this.indexManager = indexManager;
+        this.bulkIngester = bulkIngester;
+        this.esExecutor = esExecutor;
+    }
+
+    public boolean isRunning() {
+        return running.get() != null;
+    }
+
+    public Mono<ReindexResult> reindex(Flux<ProductDocument> source) {
+        return Mono.defer(() -> {
+            Run run = new Run(indexManager.newIndexName(), ConcurrentHashMap.newKeySet(), Sinks.one());
+            if (!running.compareAndSet(null, run)) {
+                return Mono.error(new IllegalStateException("A reindex is already running"));
+            }
+            long start = System.nanoTime();
+            log.info("Reindexing into {}", run.index());
+            return indexManager.createBulkLoadIndex(run.index())
+                .doOnSuccess(v -> run.created().tryEmitValue(true))
+                // Writes acknowledged before mirroring started must be searchable for the source to see them
+                .then(esExecutor.execute("refresh",
+                    c -> c.indices().refresh(r -> r.index(indexName)),
+                    c -> c.indices().refresh(r -> r.index(indexName))))
+                .then(bulkIngester.ingest(source, run.index(), true)
+                    .reduce(BulkIngestResult.EMPTY, (total, batch) -> batch.addTo(total)))
+                .flatMap(loaded -> reapplyDeletes(run)
+                    .then(indexManager.finishBulkLoad(run.index()))
+                    .then(indexManager.swapAlias(run.index()))
+                    .flatMap(previous -> {
+                        // The alias already points to the new index; from here on, failures must not undo the swap
+                        running.compareAndSet(run, null);
+                        Mono<Void> cleanup = deletePrevious
+                            ? indexManager.deleteIndices(previous).onErrorResume(e -> {
+                                log.warn("Could not delete previous indices {}: {}", previous, e.getMessage());
+                                return Mono.empty();
+                            })
+                            : Mono.empty();
+                        return cleanup.thenReturn(new ReindexResult(run.index(), previous, loaded,
+                            (System.nanoTime() - start) / 1_000_000));
+                    }))
+                .doOnNext(result -> log.info("Reindex finished: {}", result))
+                .onErrorResume(e -> abandon(run).then(Mono.error(e)))
+                .doOnCancel(() -> abandon(run).subscribe());
+        });
+    }
+
+    // Drops a reindex that failed or was cancelled before the swap; the live index was never touched
+    private Mono<Void> abandon(Run run) {
+        if (!running.compareAndSet(run, null)) {
+            return Mono.empty();
+        }
+        run.created().tryEmitValue(false); // releases mirrors still waiting for the index
+        log.warn("Reindex into {} abandoned, deleting it", run.index());
+        return indexManager.deleteIndices(List.of(run.index()))
+            .onErrorResume(e -> {
+                log.warn("Could not delete abandoned index {}: {}", run.index(), e.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    private Mono<Void> reapplyDeletes(Run run) {
+        List<FieldValue> ids = run.deleted().stream().map(FieldValue::of).toList();
+        if (ids.isEmpty()) {
+            return Mono.empty();
+        }
+        return esExecutor.execute("delete_by_query",
+                c -> c.deleteByQuery(d -> d.index(run.index()).query(q -> q.terms(t -> t.field("_id").terms(v -> v.value(ids))))),
+                c -> c.deleteByQuery(d -> d.index(run.index()).query(q -> q.terms(t -> t.field("_id").terms(v -> v.value(ids))))))
+            .doOnNext(response -> log.info("Removed {} documents deleted during the reindex", response.deleted()))
+            .then();
+    }
+
+    // Called after products were written to the live index
+    public Mono<Void> mirrorWrites(List<ProductDocument> products) {
+        Run run = running.get();
+        if (run == null || products.isEmpty()) {
+            return Mono.empty();
+        }
+        products.forEach(product -> run.deleted().remove(product.id()));
+        return run.whenCreated(bulkIngester.ingest(Flux.fromIterable(products), run.index(), false).then());
+    }
+
+    // Called after a product was deleted from the live index
+    public Mono<Void> mirrorDelete(String id) {
+        Run run = running.get();
+        if (run == null) {
+            return Mono.empty();
+        }
+        run.deleted().add(id);
+        return run.whenCreated(esExecutor.executeBackground("delete",
+                c -> c.delete(d -> d.index(run.index()).id(id)),
+                c -> c.delete(d -> d.index(run.index()).id(id)))
+            .then());
+    }
+}
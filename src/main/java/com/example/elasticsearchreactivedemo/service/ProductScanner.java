@@ -0,0 +1,119 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Streams every document of the index using a point-in-time and search_after, split into slices that are
+// read in parallel. Pages are only fetched as downstream demand arrives, so memory stays bounded by
+// roughly one page per slice regardless of index size.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductScanner {
+
+    private final ElasticsearchExecutor esExecutor;
+
+    @Value("${elasticsearch.index.name}")
+    private String indexName;
+
+    @Value("${elasticsearch.scan.page-size:1000}")
+    private int pageSize;
+
+    // 0 = one slice per available core
+    @Value("${elasticsearch.scan.slices:0}")
+    private int slices;
+
+    @Value("${elasticsearch.scan.keep-alive:1m}")
+    private Duration keepAlive;
+
+    private record Page(List<ProductDocument> documents, String pitId, List<FieldValue> searchAfter, boolean last) {
+    }
+
+    public Flux<ProductDocument> scan() {
+        int sliceCount = slices > 0 ? slices : Runtime.getRuntime().availableProcessors();
+        return Flux.usingWhen(
+            openPointInTime(),
+            pitId -> Flux.range(0, sliceCount)
+                .flatMap(slice -> scanSlice(pitId, slice, sliceCount), sliceCount, 1)
+                .concatMapIterable(Page::documents, 1),
+            this::closePointInTime);
+    }
+
+    private Flux<Page> scanSlice(String pitId, int slice, int sliceCount) {
+        return fetchPage(pitId, slice, sliceCount, null)
+            .expand(page -> page.last() ? Mono.empty() : fetchPage(page.pitId(), slice, sliceCount, page.searchAfter()));
+    }
+
+    private Mono<Page> fetchPage(String pitId, int slice, int sliceCount, List<FieldValue> searchAfter) {
+        SearchRequest request = SearchRequest.of(s -> {
+            s.size(pageSize)
+                .pit(p -> p.id(pitId).keepAlive(keepAliveTime()))
+                // _shard_doc is the cheapest tiebreaker-free sort for a full scan
+                .sort(so -> so.field(f -> f.field("_shard_doc").order(SortOrder.Asc)))
+                .trackTotalHits(t -> t.enabled(false));
+            if (sliceCount > 1) {
+                s.slice(sl -> sl.id(String.valueOf(slice)).max(sliceCount));
+            }
+            if (searchAfter != null) {
+                s.searchAfter(searchAfter);
+            }
+            return s;
+        });
+        return esExecutor.executeBackground("scan",
+                c -> c.search(request, ProductDocument.class),
+                c -> c.search(request, ProductDocument.class))
+            .map(response -> toPage(pitId, response));
+    }
+
+    private Page toPage(String pitId, SearchResponse<ProductDocument> response) {
+        List<Hit<ProductDocument>> hits = response.hits().hits();
+        List<ProductDocument> documents = hits.stream()
+            .map(ProductService::fromHit)
+            .filter(Objects::nonNull)
+            .toList();
+        List<FieldValue> searchAfter = hits.isEmpty() ? null : hits.get(hits.size() - 1).sort();
+        // The PIT id may change between requests; always continue with the latest one
+        String nextPitId = response.pitId() != null ? response.pitId() : pitId;
+        return new Page(documents, nextPitId, searchAfter, hits.size() < pageSize);
+    }
+
+    private Mono<String> openPointInTime() {
+        return esExecutor.execute("open_point_in_time",
+                c -> c.openPointInTime(o -> o.index(indexName).keepAlive(keepAliveTime())),
+                c -> c.openPointInTime(o -> o.index(indexName).keepAlive(keepAliveTime())))
+            .map(response -> {
+                log.debug("Opened point-in-time for scan of {}", indexName);
+                return response.id();
+            });
+    }
+
+    private Mono<Void> closePointInTime(String pitId) {
+        return esExecutor.execute("close_point_in_time",
+                c -> c.closePointInTime(cl -> cl.id(pitId)),
+                c -> c.closePointInTime(cl -> cl.id(pitId)))
+            .doOnError(e -> log.warn("Failed to close point-in-time: {}", e.getMessage()))
+            .onErrorResume(e -> Mono.empty())
+            .then();
+    }
+
+    private Time keepAliveTime() {
+        return Time.of(t -> t.time(keepAlive.toSeconds() + "s"));
+    }
+}
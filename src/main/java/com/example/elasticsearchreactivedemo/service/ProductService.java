@@ -1,168 +1,675 @@
 package com.example.elasticsearchreactivedemo.service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
 import org.springframework.stereotype.Service;
 
+import com.example.elasticsearchreactivedemo.model.BulkIngestResult;
+import com.example.elasticsearchreactivedemo.model.DocumentVersion;
+import com.example.elasticsearchreactivedemo.model.FacetedSearchResult;
+import com.example.elasticsearchreactivedemo.model.FieldProjection;
+import com.example.elasticsearchreactivedemo.model.ImportEvent;
 import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.ProductFilter;
+import com.example.elasticsearchreactivedemo.model.ProductPatch;
+import com.example.elasticsearchreactivedemo.model.ReindexResult;
+import com.example.elasticsearchreactivedemo.model.Suggestion;
+import com.example.elasticsearchreactivedemo.model.TaskHandle;
+import com.example.elasticsearchreactivedemo.model.TaskProgress;
+import com.example.elasticsearchreactivedemo.model.VersionedProduct;
 
-import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.Refresh;
 import co.elastic.clients.elasticsearch._types.Result;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.JsonData;
 import co.elastic.clients.elasticsearch.core.DeleteRequest;
-import co.elastic.clients.elasticsearch.core.DeleteResponse;
 import co.elastic.clients.elasticsearch.core.GetRequest;
-import co.elastic.clients.elasticsearch.core.GetResponse;
 import co.elastic.clients.elasticsearch.core.IndexRequest;
-import co.elastic.clients.elasticsearch.core.IndexResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
-import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.UpdateRequest;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.SourceConfig;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
 @Service
 @RequiredArgsConstructor // Lombok constructor injection
 @Slf4j
 public class ProductService {
 
-    private final ElasticsearchClient esClient;
+    private final ElasticsearchExecutor esExecutor;
+    private final ProductBulkIngester bulkIngester;
+    private final RecentWritesOverlay writesOverlay;
+    private final ProductScanner productScanner;
+    private final ProductCache productCache;
+    private final SearchResultCache searchCache;
+    private final ProductLookupBatcher lookupBatcher;
+    private final NdjsonProductReader ndjsonReader;
+    private final ProductMetrics metrics;
+    private final RawSearchHits rawSearchHits;
+    private final ProductSuggester suggester;
+    private final ProductReindexer reindexer;
+    private final ProductTasks tasks;
+    private final ProductWriteBehind writeBehind;
+    private final ReadHedger hedger;
 
     @Value("${elasticsearch.index.name}")
     private String indexName;
 
+    @Value("${elasticsearch.update.retry-on-conflict:3}")
+    private int retryOnConflict;
+
+    @Value("${elasticsearch.facets.size:20}")
+    private int facetSize;
+
+    // Exact-match keyword fields for filters and terms aggregations; see elasticsearch/product-mappings.json
+    static final String CATEGORY_FIELD = "category";
+    static final String TAGS_FIELD = "tags";
+    // Full-text fields, name boosted; category and tags are searched through their text subfields
+    static final List<String> SEARCH_FIELDS = List.of("name^3", "description", "category.text", "tags.text");
+
     // save multiple products
-    public Mono<ProductDocument> saveProducts(List<ProductDocument> products) {
-        // write method content
-        return Flux.fromIterable(products)
-                .flatMap(this::saveProduct)
-                .last();
+    public Mono<BulkIngestResult> saveProducts(List<ProductDocument> products) {
+        return saveProducts(Flux.fromIterable(products));
+    }
+
+    // Index a stream of products through batched _bulk requests, refreshing once at the end
+    public Mono<BulkIngestResult> saveProducts(Flux<ProductDocument> products) {
+        return ingest(products)
+            .reduce(BulkIngestResult.EMPTY, (total, batch) -> batch.addTo(total))
+            .flatMap(result -> refreshAfterIngest().thenReturn(result))
+            .doOnNext(result -> log.info("Bulk ingestion finished: {}", result));
+    }
+
+    // Stream an NDJSON upload into bulk indexing, reporting unparseable lines, rejected documents and progress
+    public Flux<ImportEvent> importProducts(Flux<DataBuffer> body) {
+        return writeLines(ndjsonReader.read(body), this::ingest, "Import");
+    }
+
+    // Lines that fail to parse are reported as they are read, the rest are written in batches whose failures
+    // and running totals follow as each batch completes; a final refresh makes everything searchable
+    private <T> Flux<ImportEvent> writeLines(Flux<NdjsonProductReader.Line<T>> input,
+                                             Function<Flux<T>, Flux<BulkBatchResult>> writer, String operation) {
+        return Flux.defer(() -> {
+            AtomicLong lines = new AtomicLong();
+            AtomicLong lineErrors = new AtomicLong();
+            AtomicReference<BulkIngestResult> totals = new AtomicReference<>(BulkIngestResult.EMPTY);
+            return input
+                .doOnNext(line -> lines.set(line.number()))
+                .publish(shared -> Flux.merge(
+                    shared.filter(NdjsonProductReader.Line::isError)
+                        .map(line -> {
+                            lineErrors.incrementAndGet();
+                            return ImportEvent.lineError(line.number(), line.error());
+                        }),
+                    writer.apply(shared.filter(line -> !line.isError()).map(NdjsonProductReader.Line::product))
+                        .concatMapIterable(batch -> {
+                            BulkIngestResult total = totals.updateAndGet(batch::addTo);
+                            List<ImportEvent> events = new ArrayList<>();
+                            batch.failures().forEach(f -> events.add(ImportEvent.documentError(f.id(), f.reason())));
+                            events.add(ImportEvent.progress(lines.get(), total.plusFailed(lineErrors.get())));
+                            return events;
+                        })))
+                .concatWith(refreshAfterIngest().then(Mono.fromSupplier(() ->
+                    ImportEvent.done(lines.get(), totals.get().plusFailed(lineErrors.get())))))
+                .doOnComplete(() -> log.info("{} finished: {} lines, {}", operation, lines.get(), totals.get()));
+        });
+    }
+
+    private Flux<BulkBatchResult> ingest(Flux<ProductDocument> products) {
+        return afterBulkWrite(bulkIngester.ingest(products));
+    }
+
+    private Flux<BulkBatchResult> update(Flux<ProductPatch> patches) {
+        return afterBulkWrite(bulkIngester.update(patches));
+    }
 
+    private Flux<BulkBatchResult> afterBulkWrite(Flux<BulkBatchResult> batches) {
+        return batches
+            .doOnNext(batch -> {
+                batch.indexed().forEach(p -> {
+                    productCache.invalidate(p.id());
+                    suggester.add(p);
+                });
+                searchCache.onWrite();
+            })
+            .concatMap(batch -> reindexer.mirrorWrites(batch.indexed()).thenReturn(batch));
+    }
+
+    private Mono<Void> refreshAfterIngest() {
+        return refreshIndex()
+            .doOnSuccess(v -> searchCache.onWrite()); // results cached before the refresh are stale
+    }
+
+    private Mono<Void> refreshIndex() {
+        return esExecutor.execute("refresh",
+                c -> c.indices().refresh(r -> r.index(indexName)),
+                c -> c.indices().refresh(r -> r.index(indexName)))
+            .then();
     }
 
     // Save or update a product. Generates ID if null.
     public Mono<ProductDocument> saveProduct(ProductDocument product) {
-        return Mono.fromCallable(() -> {
-            // Generate ID if not present
-            if (product.getId() == null || product.getId().isEmpty()) {
-                product.setId(UUID.randomUUID().toString());
-            }
+        if (writeBehind.isEnabled()) {
+            return metrics.timed("save", Mono.defer(() -> {
+                ProductDocument withId = assignId(product);
+                // Durable in the write-behind log, which also holds it in the overlay until it is drained
+                return writeBehind.put(withId).then(Mono.fromSupplier(() -> {
+                    updateReadPaths(new VersionedProduct(withId, null));
+                    return withId;
+                }));
+            }));
+        }
+        return metrics.timed("save", Mono.defer(() -> {
+            ProductDocument withId = assignId(product);
 
             IndexRequest<ProductDocument> request = IndexRequest.of(i -> i
                 .index(indexName)
-                .id(product.getId())
-                .document(product)
-                .refresh(co.elastic.clients.elasticsearch._types.Refresh.True) // Refresh for visibility in tests/immediately
+                .id(withId.id())
+                .document(withId)
+                .refresh(writesOverlay.refreshPolicy()) // Forced refresh unless the overlay provides visibility
             );
 
-            log.debug("Indexing document: {}", product);
-            IndexResponse response = esClient.index(request);
-            log.info("Indexed document ID: {}, Result: {}", response.id(), response.result());
+            log.debug("Indexing document: {}", withId);
+            return esExecutor.execute("index", c -> c.index(request), c -> c.index(request))
+                .map(response -> {
+                    log.info("Indexed document ID: {}, Result: {}", response.id(), response.result());
 
-            // Verify result - could throw exception on failure if needed
-            if (response.result() != Result.Created && response.result() != Result.Updated) {
-                 log.error("Failed to index document {}: {}", product.getId(), response.result());
-                 throw new RuntimeException("Failed to index document: " + response.result());
-            }
-            return product; // Return the product with the (potentially generated) ID
-        }).subscribeOn(Schedulers.boundedElastic()); // Offload blocking IO call
+                    // Verify result - could throw exception on failure if needed
+                    if (response.result() != Result.Created && response.result() != Result.Updated) {
+                         log.error("Failed to index document {}: {}", withId.id(), response.result());
+                         throw new RuntimeException("Failed to index document: " + response.result());
+                    }
+                    afterSave(new VersionedProduct(withId, new DocumentVersion(response.seqNo(), response.primaryTerm())),
+                        request.refresh());
+                    return withId; // Return the product with the (potentially generated) ID
+                });
+        })
+        .flatMap(saved -> reindexer.mirrorWrites(List.of(saved)).thenReturn(saved)));
+    }
+
+    private static ProductDocument assignId(ProductDocument product) {
+        // Generate ID if not present
+        if (product.id() == null || product.id().isEmpty()) {
+            return product.withId(UUID.randomUUID().toString());
+        }
+        return product;
+    }
+
+    // Changes only the fields present in the patch. With an expected version the update only applies if the
+    // document is still at that version (a ConcurrentModificationException otherwise), without one Elasticsearch
+    // re-applies the patch on top of concurrent writes up to retry-on-conflict times. Empty if the product is missing.
+    // A write to the product still waiting in the write-behind log is drained first, so the patch applies on top of it.
+    public Mono<VersionedProduct> patchProduct(String id, ProductPatch patch, DocumentVersion expected) {
+        return metrics.timed("patch", writeBehind.awaitDrained(id).then(Mono.defer(() -> {
+            UpdateRequest<ProductDocument, ProductPatch> request = UpdateRequest.of(u -> {
+                u.index(indexName)
+                    .id(id)
+                    .doc(patch.withId(id))
+                    .source(src -> src.fetch(true)) // the merged document, for the caches and the response
+                    .refresh(writesOverlay.refreshPolicy());
+                if (expected != null) {
+                    u.ifSeqNo(expected.seqNo()).ifPrimaryTerm(expected.primaryTerm());
+                } else {
+                    u.retryOnConflict(retryOnConflict);
+                }
+                return u;
+            });
+            return esExecutor.execute("update",
+                    c -> c.update(request, ProductDocument.class),
+                    c -> c.update(request, ProductDocument.class))
+                .map(response -> {
+                    log.debug("Updated document ID: {}, Result: {}", response.id(), response.result());
+                    ProductDocument product = response.get().source().withId(id);
+                    VersionedProduct updated = new VersionedProduct(product, new DocumentVersion(response.seqNo(), response.primaryTerm()));
+                    if (response.result() != Result.NoOp) {
+                        afterSave(updated, request.refresh());
+                    }
+                    return updated;
+                });
+        }))
+        .onErrorResume(e -> e instanceof ElasticsearchException es && es.status() == 404, e -> Mono.empty())
+        .onErrorMap(e -> e instanceof ElasticsearchException es && es.status() == 409,
+            e -> new ConcurrentModificationException(expected != null
+                ? "Product " + id + " was modified since version " + expected.toETag()
+                : "Product " + id + " kept changing, gave up after " + retryOnConflict + " retries"))
+        .flatMap(updated -> reindexer.mirrorWrites(List.of(updated.product())).thenReturn(updated)));
+    }
+
+    // Stream an NDJSON feed of partial updates, e.g. price changes, through batched _bulk updates. Progress is
+    // reported like an import; lines without an id and updates of missing products are errors.
+    public Flux<ImportEvent> patchProducts(Flux<DataBuffer> body) {
+        Flux<NdjsonProductReader.Line<ProductPatch>> lines = ndjsonReader.read(body, ProductPatch.class)
+            .map(line -> line.isError() || (line.product().id() != null && !line.product().id().isEmpty()) ? line
+                : new NdjsonProductReader.Line<>(line.number(), null, "Missing id"));
+        return writeLines(lines, this::update, "Partial update feed");
     }
 
     public Mono<ProductDocument> getProductById(String id) {
-        return Mono.fromCallable(() -> {
-            log.debug("Getting document with ID: {}", id);
-            GetRequest getRequest = GetRequest.of(g -> g.index(indexName).id(id));
-            GetResponse<ProductDocument> response = esClient.get(getRequest, ProductDocument.class);
-
-            if (response.found()) {
-                ProductDocument doc = response.source();
-                // ES doesn't store the ID in the _source by default
-                if (doc != null) {
-                    doc.setId(response.id());
+        return getVersionedProductById(id).map(VersionedProduct::product);
+    }
+
+    // With the version to send back as If-Match; null for a recent write whose version is not known yet
+    public Mono<VersionedProduct> getVersionedProductById(String id) {
+        return metrics.timed("get", Mono.defer(() -> writesOverlay.lookup(id)
+            .map(pending -> {
+                log.debug("Serving document {} from recent writes", id);
+                return Mono.justOrEmpty(pending.doc()).flatMap(doc -> productCache.getIfPresent(id)
+                    .filter(cached -> cached.product().equals(doc)) // the write's own version, if it was cached
+                    .defaultIfEmpty(new VersionedProduct(doc, null)));
+            })
+            .orElseGet(() -> productCache.get(id, this::fetchProductById))));
+    }
+
+    // Only the requested fields: recent writes and cached documents are projected in memory, anything else is
+    // fetched with a _source filter and never enters the cache, which holds full documents only
+    public Mono<Map<String, Object>> getProductById(String id, FieldProjection projection) {
+        return metrics.timed("get", Mono.defer(() -> writesOverlay.lookup(id)
+            .map(pending -> Mono.justOrEmpty(pending.doc()).map(projection::apply))
+            .orElseGet(() -> productCache.getIfPresent(id)
+                .map(cached -> projection.apply(cached.product()))
+                .switchIfEmpty(Mono.defer(() -> fetchProjectedById(id, projection))))));
+    }
+
+    // Lookups go through the same overlay, cache and _mget batching as single gets; found products keep request order
+    public Flux<ProductDocument> getProductsByIds(List<String> ids) {
+        return Flux.fromIterable(ids)
+            .distinct()
+            .flatMapSequential(this::getProductById);
+    }
+
+    private Mono<VersionedProduct> fetchProductById(String id) {
+        if (lookupBatcher.isEnabled()) {
+            return lookupBatcher.get(id);
+        }
+        log.debug("Getting document with ID: {}", id);
+        return hedger.hedge("get", preference -> {
+                GetRequest getRequest = GetRequest.of(g -> g.index(indexName).id(id).preference(preference));
+                return esExecutor.execute("get",
+                    c -> c.get(getRequest, ProductDocument.class),
+                    c -> c.get(getRequest, ProductDocument.class));
+            })
+            .mapNotNull(response -> {
+                if (response.found()) {
+                    ProductDocument doc = response.source();
+                    log.debug("Found document: {}", doc);
+                    // ES doesn't store the ID in the _source by default
+                    return doc == null ? null
+                        : new VersionedProduct(doc.withId(response.id()), DocumentVersion.of(response.seqNo(), response.primaryTerm()));
+                } else {
+                    log.debug("Document not found with ID: {}", id);
+                    return null; // Will be mapped to Mono.empty()
                 }
-                log.debug("Found document: {}", doc);
-                return doc;
-            } else {
-                log.debug("Document not found with ID: {}", id);
-                return null; // Will be mapped to Mono.empty()
-            }
-        })
-        .subscribeOn(Schedulers.boundedElastic()) // Offload blocking IO call
-        .filter(Objects::nonNull); // Convert null result to empty Mono
+            });
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Mono<Map<String, Object>> fetchProjectedById(String id, FieldProjection projection) {
+        log.debug("Getting fields {} of document with ID: {}", projection, id);
+        GetRequest getRequest = GetRequest.of(g -> projection.fetchSource()
+            ? g.index(indexName).id(id).sourceIncludes(projection.includes()).sourceExcludes(projection.excludes())
+            : g.index(indexName).id(id).source(s -> s.fetch(false)));
+        return esExecutor.execute("get",
+                c -> c.get(getRequest, Map.class),
+                c -> c.get(getRequest, Map.class))
+            .filter(response -> response.found())
+            .map(response -> projection.apply(response.id(), (Map<String, Object>) response.source()));
+    }
+
+    // Projected search results bypass the search cache, which holds full documents only
+    public Flux<Map<String, Object>> searchProducts(String query, FieldProjection projection) {
+        return metrics.timed("search", writesOverlay.mergeSearch(query, fetchProjectedSearchResults(query, projection),
+            hit -> (String) hit.get("id"), projection::apply));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Flux<Map<String, Object>> fetchProjectedSearchResults(String query, FieldProjection projection) {
+        log.debug("Searching for fields {} of products with query: '{}'", projection, query);
+        SearchRequest searchRequest = SearchRequest.of(s -> s
+            .index(indexName)
+            .query(q -> q
+                .multiMatch(m -> m
+                    .query(query)
+                    .fields(SEARCH_FIELDS)
+                )
+            )
+            .source(sourceConfig(projection))
+        );
+
+        return esExecutor.execute("search",
+                c -> c.search(searchRequest, Map.class),
+                c -> c.search(searchRequest, Map.class))
+            .flatMapIterable(response -> response.hits().hits())
+            .map(hit -> projection.apply(hit.id(), (Map<String, Object>) hit.source()));
+    }
+
+    private static SourceConfig sourceConfig(FieldProjection projection) {
+        return SourceConfig.of(s -> projection.fetchSource()
+            ? s.filter(f -> f.includes(projection.includes()).excludes(projection.excludes()))
+            : s.fetch(false));
     }
 
     public Flux<ProductDocument> searchProducts(String query) {
-        return Mono.fromCallable(() -> {
-            log.debug("Searching for products with query: '{}'", query);
-            SearchRequest searchRequest = SearchRequest.of(s -> s
-                .index(indexName)
-                .query(q -> q
-                    .multiMatch(m -> m // Search across multiple fields
-                        .query(query)
-                        .fields("name^3", "description", "category", "tags") // Boost name field
-                    )
+        return metrics.timed("search", writesOverlay.mergeSearch(query, searchCache.get(query, this::fetchSearchResults)));
+    }
+
+    // Search results as the JSON array the search endpoint returns, copied from the raw response bytes without
+    // decoding hits. While recent writes are pending, the overlay needs decoded hits, so those searches take the
+    // regular path and are encoded in one piece. Raw searches bypass the search cache.
+    public Flux<DataBuffer> searchProductsRaw(String query, DataBufferFactory bufferFactory) {
+        if (writesOverlay.isEnabled() && !writesOverlay.pendingVisibility().isZero()) {
+            return searchProducts(query).collectList()
+                .flatMap(products -> rawSearchHits.write(products, bufferFactory))
+                .flux();
+        }
+        log.debug("Searching for raw products with query: '{}'", query);
+        return metrics.timed("search_raw", rawSearch(query)
+            .flatMapMany(response -> rawSearchHits.write(response.getEntity(), bufferFactory,
+                (took, hits) -> esExecutor.recordResult("search", took, hits))));
+    }
+
+    // Decoded straight from the raw response rather than through the client's SearchResponse and Hit objects;
+    // see RawSearchHits.decode
+    private Flux<ProductDocument> fetchSearchResults(String query) {
+        log.debug("Searching for products with query: '{}'", query);
+        return rawSearch(query)
+            .map(response -> {
+                try {
+                    return rawSearchHits.decode(response.getEntity());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })
+            .flatMapIterable(decoded -> {
+                log.debug("Search hits: {}", decoded.hits());
+                esExecutor.recordResult("search", decoded.took(), decoded.hits());
+                return decoded.products();
+            });
+    }
+
+    private Mono<Response> rawSearch(String query) {
+        return hedger.hedge("search", preference -> {
+            Request request = esExecutor.rawRequest("POST", "/" + indexName + "/_search", searchRequest(query));
+            // Have Elasticsearch drop everything but took, the ids and the sources before sending the response
+            request.addParameter("filter_path", "took,hits.hits._id,hits.hits._source");
+            if (preference != null) {
+                request.addParameter("preference", preference); // routes a hedged search to other shard copies
+            }
+            return esExecutor.executeRaw("search", request);
+        });
+    }
+
+    private SearchRequest searchRequest(String query) {
+        return SearchRequest.of(s -> s
+            .index(indexName)
+            .query(q -> q
+                .multiMatch(m -> m // Search across multiple fields
+                    .query(query)
+                    .fields(SEARCH_FIELDS)
                 )
-            );
+            )
+        );
+    }
+
+    // One round trip for hits and facets. Category, tag and price criteria go into the bool filter clause, so
+    // Elasticsearch skips scoring them and caches the matching documents per segment; only the free text is scored.
+    // Facet counts cover all matching products, not just the returned page. Like search, this reads the index,
+    // but aggregations cannot be merged with the recent writes overlay, so unrefreshed writes are not counted yet.
+    public Mono<FacetedSearchResult> searchFacets(ProductFilter filter, int size, double priceInterval) {
+        SearchRequest searchRequest = SearchRequest.of(s -> s
+            .index(indexName)
+            .size(size)
+            .query(filterQuery(filter))
+            .aggregations("categories", a -> a.terms(t -> t.field(CATEGORY_FIELD).size(facetSize)))
+            .aggregations("tags", a -> a.terms(t -> t.field(TAGS_FIELD).size(facetSize)))
+            .aggregations("prices", a -> a.histogram(h -> h.field("price").interval(priceInterval).minDocCount(1)))
+        );
+        log.debug("Faceted search: {}", filter);
+
+        return metrics.timed("search_facets", esExecutor.execute("search",
+                c -> c.search(searchRequest, ProductDocument.class),
+                c -> c.search(searchRequest, ProductDocument.class))
+            .map(response -> new FacetedSearchResult(
+                response.hits().total() != null ? response.hits().total().value() : response.hits().hits().size(),
+                response.hits().hits().stream().map(ProductService::fromHit).filter(Objects::nonNull).toList(),
+                new FacetedSearchResult.Facets(
+                    termBuckets(response.aggregations().get("categories")),
+                    termBuckets(response.aggregations().get("tags")),
+                    response.aggregations().get("prices").histogram().buckets().array().stream()
+                        .map(b -> new FacetedSearchResult.PriceBucket(b.key(), b.docCount()))
+                        .toList()))));
+    }
+
+    private static Query filterQuery(ProductFilter filter) {
+        return Query.of(q -> q.bool(b -> {
+            if (filter.query() != null && !filter.query().isBlank()) {
+                b.must(m -> m.multiMatch(mm -> mm
+                    .query(filter.query())
+                    .fields(SEARCH_FIELDS)));
+            }
+            if (filter.category() != null) {
+                b.filter(f -> f.term(t -> t.field(CATEGORY_FIELD).value(filter.category())));
+            }
+            if (!filter.tags().isEmpty()) {
+                // Any of the given tags
+                b.filter(f -> f.terms(t -> t.field(TAGS_FIELD)
+                    .terms(v -> v.value(filter.tags().stream().map(FieldValue::of).toList()))));
+            }
+            if (filter.minPrice() != null || filter.maxPrice() != null) {
+                b.filter(f -> f.range(r -> {
+                    r.field("price");
+                    if (filter.minPrice() != null) {
+                        r.gte(JsonData.of(filter.minPrice()));
+                    }
+                    if (filter.maxPrice() != null) {
+                        r.lte(JsonData.of(filter.maxPrice()));
+                    }
+                    return r;
+                }));
+            }
+            return b;
+        }));
+    }
 
-            SearchResponse<ProductDocument> response = esClient.search(searchRequest, ProductDocument.class);
-            log.debug("Search hits: {}", response.hits().total().value());
+    private static List<FacetedSearchResult.Bucket> termBuckets(Aggregate aggregate) {
+        return aggregate.sterms().buckets().array().stream()
+            .map(b -> new FacetedSearchResult.Bucket(b.key().stringValue(), b.docCount()))
+            .toList();
+    }
+
+    // Rebuild the current catalog into a new index, e.g. to apply changed mappings; see ProductReindexer
+    public Mono<ReindexResult> reindexProducts() {
+        return Mono.defer(() -> tasks.hasPending()
+            ? Mono.error(new IllegalStateException("Cannot reindex while a by-query task is running"))
+            : reindexer.reindex(productScanner.scan()));
+    }
 
-            return response.hits().hits().stream()
-                .map(hit -> {
-                    ProductDocument doc = hit.source();
-                    if (doc != null) {
-                        doc.setId(hit.id()); // Set the ID from the hit metadata
+    // Replace the catalog with an NDJSON upload, loaded into a new index; unparseable lines count as failed
+    public Mono<ReindexResult> reloadProducts(Flux<DataBuffer> body) {
+        return Mono.defer(() -> {
+            if (tasks.hasPending()) {
+                return Mono.error(new IllegalStateException("Cannot reload while a by-query task is running"));
+            }
+            AtomicLong lineErrors = new AtomicLong();
+            Flux<ProductDocument> products = ndjsonReader.read(body)
+                .filter(line -> {
+                    if (line.isError()) {
+                        lineErrors.incrementAndGet();
                     }
-                    return doc;
+                    return !line.isError();
                 })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList()); // Collect results first
+                .map(NdjsonProductReader.Line::product);
+            return reindexer.reindex(products)
+                .map(result -> new ReindexResult(result.index(), result.previousIndices(),
+                    result.loaded().plusFailed(lineErrors.get()), result.tookMillis()))
+                .doOnNext(result -> {
+                    // The catalog was replaced as a whole, but the new index is complete and refreshed, so the overlay
+                    // keeps serving index hits (and writes not yet drained) rather than treating it as deleted
+                    productCache.invalidateAll();
+                    searchCache.onWrite();
+                    suggester.rebuild();
+                });
+        });
+    }
 
-        })
-        .subscribeOn(Schedulers.boundedElastic()) // Offload blocking IO call
-        .flatMapMany(Flux::fromIterable); // Convert the List<Product> to Flux<Product>
+    // Deletes every product matching the filter in a background task; see ProductTasks
+    public Mono<TaskHandle> deleteProductsByQuery(ProductFilter filter, Float throttle) {
+        log.info("Deleting products by query: {}", filter);
+        return inBackground(tasks.deleteByQuery(filterQuery(filter), throttle));
+    }
+
+    // Sets the patch's fields on every product matching the filter in a background task
+    public Mono<TaskHandle> updateProductsByQuery(ProductFilter filter, ProductPatch patch, Float throttle) {
+        log.info("Updating products by query: {} with {}", filter, patch);
+        Map<String, Object> fields = patch.fields();
+        if (fields.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("No fields to update"));
+        }
+        return inBackground(tasks.updateByQuery(filterQuery(filter), fields, throttle));
+    }
+
+    // The task's writes bypass the per-document write paths, so the in-process read paths are reset once it is done.
+    // Writes to the live index are not mirrored into a reindex, so the two exclude each other.
+    private Mono<TaskHandle> inBackground(Mono<String> submit) {
+        return Mono.defer(() -> reindexer.isRunning()
+                ? Mono.<String>error(new IllegalStateException("Cannot run a by-query task while a reindex is running"))
+                : submit)
+            .doOnNext(taskId -> tasks.await(taskId).subscribe(
+                progress -> {
+                    log.info("Task finished: {}", progress);
+                    productCache.invalidateAll();
+                    searchCache.onWrite();
+                    suggester.rebuild();
+                },
+                error -> log.error("Failed to follow task {}", taskId, error)))
+            .map(TaskHandle::new);
+    }
+
+    public Flux<TaskProgress> taskProgress(String taskId) {
+        return tasks.watch(taskId);
+    }
+
+    public Mono<Void> rethrottleTask(String taskId, float throttle) {
+        return tasks.rethrottle(taskId, throttle);
+    }
+
+    public Mono<Void> cancelTask(String taskId) {
+        return tasks.cancel(taskId);
+    }
+
+    // Typeahead from memory; see ProductSuggester
+    public List<Suggestion> suggest(String prefix, int size) {
+        return suggester.suggest(prefix, size);
+    }
+
+    // Stream the whole catalog; see ProductScanner
+    public Flux<ProductDocument> exportProducts() {
+        return productScanner.scan();
+    }
+
+    static ProductDocument fromHit(Hit<ProductDocument> hit) {
+        ProductDocument doc = hit.source();
+        return doc == null ? null : doc.withId(hit.id()); // Set the ID from the hit metadata
     }
 
 
     public Mono<Void> deleteProduct(String id) {
-         return Mono.fromCallable(() -> {
-            log.debug("Deleting document with ID: {}", id);
-            DeleteRequest deleteRequest = DeleteRequest.of(d -> d.index(indexName).id(id)
-                                                                 .refresh(co.elastic.clients.elasticsearch._types.Refresh.True));
-            DeleteResponse response = esClient.delete(deleteRequest);
-
-            log.info("Delete result for ID {}: {}", id, response.result());
-            if (response.result() == Result.NotFound) {
-                 log.warn("Document not found for deletion with ID: {}", id);
-                 // Decide if NotFound should be an error or just complete normally
-                 // Throwing an exception here would propagate to onErrorResume in controller
-                 // throw new ProductNotFoundException("Product with id " + id + " not found for deletion.");
-            } else if (response.result() != Result.Deleted) {
-                log.error("Failed to delete document {}: {}", id, response.result());
-                throw new RuntimeException("Failed to delete document: " + response.result());
-            }
-            return response; // Return something non-null for fromCallable
-        })
-        .subscribeOn(Schedulers.boundedElastic()) // Offload blocking IO call
-        .then(); // Convert to Mono<Void> on success
+        log.debug("Deleting document with ID: {}", id);
+        if (writeBehind.isEnabled()) {
+            return metrics.timed("delete", writeBehind.delete(id)
+                .then(Mono.fromRunnable(() -> updateReadPathsAfterDelete(id))));
+        }
+        DeleteRequest deleteRequest = DeleteRequest.of(d -> d.index(indexName).id(id)
+                                                             .refresh(writesOverlay.refreshPolicy()));
+        return metrics.timed("delete", esExecutor.execute("delete", c -> c.delete(deleteRequest), c -> c.delete(deleteRequest))
+            .doOnNext(response -> {
+                log.info("Delete result for ID {}: {}", id, response.result());
+                if (response.result() == Result.NotFound) {
+                     log.warn("Document not found for deletion with ID: {}", id);
+                     // Decide if NotFound should be an error or just complete normally
+                     // Throwing an exception here would propagate to onErrorResume in controller
+                     // throw new ProductNotFoundException("Product with id " + id + " not found for deletion.");
+                } else if (response.result() != Result.Deleted) {
+                    log.error("Failed to delete document {}: {}", id, response.result());
+                    throw new RuntimeException("Failed to delete document: " + response.result());
+                }
+                afterDelete(id, deleteRequest.refresh());
+            })
+            .flatMap(response -> reindexer.mirrorDelete(id)))
+            .then(); // Convert to Mono<Void> on success
     }
 
     public Mono<Void> deleteAllProducts() {
-        return Mono.fromCallable(() -> {
-            log.debug("Deleting all documents from index: {}", indexName);
-            esClient.deleteByQuery(d -> d
-                .index(indexName)
-                .query(q -> q.matchAll(m -> m))
-                .refresh(true)
-            );
-            return null;
-        })
-        .subscribeOn(Schedulers.boundedElastic())
-        .then();
+        if (reindexer.isRunning()) {
+            return Mono.error(new IllegalStateException("Cannot delete all products while a reindex is running"));
+        }
+        log.debug("Deleting all documents from index: {}", indexName);
+        // Writes still waiting in the write-behind log would otherwise reappear once drained
+        Mono<Void> clearPending = writeBehind.isEnabled() ? writeBehind.clear() : Mono.empty();
+        // Submitted as a task like the other by-query operations, so no request stays open while it runs
+        return metrics.timed("delete_all", clearPending
+            .then(tasks.deleteByQuery(Query.of(q -> q.matchAll(m -> m)), null))
+            .flatMap(tasks::await)
+            .doOnNext(progress -> {
+                log.info("Deleted all products: {}", progress);
+                afterDeleteAll();
+            }))
+            .then();
+    }
+
+    // Keep the in-process read paths consistent with successful writes
+    private void afterSave(VersionedProduct product, Refresh refresh) {
+        writesOverlay.recordWrite(product.product(), refresh);
+        updateReadPaths(product);
+    }
+
+    private void afterDelete(String id, Refresh refresh) {
+        writesOverlay.recordDelete(id, refresh);
+        updateReadPathsAfterDelete(id);
+    }
+
+    // Everything but the overlay, which write-behind writes are already held in
+    private void updateReadPaths(VersionedProduct product) {
+        if (product.version() != null) {
+            productCache.put(product);
+        } else {
+            // Read from the overlay until drained, then loaded with its version
+            productCache.invalidate(product.product().id());
+        }
+        searchCache.onWrite();
+        suggester.add(product.product());
+    }
+
+    private void updateReadPathsAfterDelete(String id) {
+        productCache.invalidate(id);
+        searchCache.onWrite();
+        suggester.remove(id);
+    }
+
+    private void afterDeleteAll() {
+        writesOverlay.recordDeleteAll();
+        productCache.invalidateAll();
+        searchCache.onWrite();
+        suggester.clear();
     }
-}
\ No newline at end of file
+}
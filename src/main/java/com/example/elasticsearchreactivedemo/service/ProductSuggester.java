@@ -0,0 +1,246 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.Suggestion;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+// In-memory typeahead over product names and tags, so keystrokes never reach Elasticsearch. Entries live in a
+// sorted map keyed by normalized text, which makes a prefix lookup a range scan. Names are also indexed from each
+// later word, so "mak" finds "Coffee Maker". Rebuilt from a full scan on startup and kept current by the write paths.
+// A rebuild fills fresh contents that replace the live ones only once the scan is done, so suggestions never go
+// empty in between.
+@Component
+@Slf4j
+public class ProductSuggester {
+
+    private static final char SEPARATOR = '\u0000';
+    private static final char LATER_WORD = '\u0001';
+
+    // Changed only while holding the suggester's lock; suggest reads the index without it
+    private static final class Contents {
+
+        // "<match>\0<type>\0<text>" -> number of products contributing it. Names are only indexed from a later word
+        // as "<match>\0<type>\1<text>", which ranks those matches below ones at the start of the name.
+        final ConcurrentSkipListMap<String, Integer> index = new ConcurrentSkipListMap<>();
+        // What each product contributed, so updates and deletes can take it back
+        final Map<String, Set<String>> keysById = new HashMap<>();
+
+        void put(String id, Set<String> keys) {
+            Set<String> previous = keysById.put(id, keys);
+            if (previous != null) {
+                previous.forEach(this::decrement);
+            }
+            keys.forEach(key -> index.merge(key, 1, Integer::sum));
+        }
+
+        void remove(String id) {
+            Set<String> previous = keysById.remove(id);
+            if (previous != null) {
+                previous.forEach(this::decrement);
+            }
+        }
+
+        private void decrement(String key) {
+            index.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    // The scan reads an older snapshot than the write paths, so it must not replace what they wrote since it started
+    private static final class Rebuild {
+
+        final Contents contents = new Contents();
+        final Set<String> written = new HashSet<>();
+    }
+
+    private volatile Contents contents = new Contents();
+    // The running rebuild, if any; a newer rebuild or a clear supersedes it
+    private Rebuild rebuilding;
+    private final ProductScanner productScanner;
+    private final boolean enabled;
+    private final int maxScan;
+
+    public ProductSuggester(ProductScanner productScanner,
+                            @Value("${elasticsearch.suggest.enabled:true}") boolean enabled,
+                            // Bounds the work for very short prefixes; ranking only considers this many matches
+                            @Value("${elasticsearch.suggest.max-scan:1000}") int maxScan,
+                            MeterRegistry meterRegistry) {
+        this.productScanner = productScanner;
+        this.enabled = enabled;
+        this.maxScan = maxScan;
+        Gauge.builder("products.suggest.entries", this, suggester -> suggester.contents.index.size())
+            .description("Prefix index entries for name and tag suggestions")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        Rebuild rebuild = startRebuild();
+        long start = System.nanoTime();
+        productScanner.scan()
+            .doOnNext(product -> addScanned(rebuild, product))
+            .count()
+            .subscribe(
+                count -> {
+                    if (finishRebuild(rebuild)) {
+                        log.info("Suggestion index built from {} products in {} ms: {} entries",
+                            count, (System.nanoTime() - start) / 1_000_000, rebuild.contents.index.size());
+                    }
+                },
+                error -> {
+                    abandonRebuild(rebuild);
+                    log.error("Failed to build suggestion index", error);
+                });
+    }
+
+    public void add(ProductDocument product) {
+        if (!enabled || product.id() == null) {
+            return;
+        }
+        Set<String> keys = keysFor(product);
+        synchronized (this) {
+            contents.put(product.id(), keys);
+            if (rebuilding != null) {
+                rebuilding.contents.put(product.id(), keys);
+                rebuilding.written.add(product.id());
+            }
+        }
+    }
+
+    public synchronized void remove(String id) {
+        contents.remove(id);
+        if (rebuilding != null) {
+            rebuilding.contents.remove(id);
+            rebuilding.written.add(id);
+        }
+    }
+
+    // Also drops a running rebuild: whatever its scan has yet to read is gone as well
+    public synchronized void clear() {
+        contents = new Contents();
+        rebuilding = null;
+    }
+
+    public List<Suggestion> suggest(String prefix, int size) {
+        String normalized = normalize(prefix);
+        if (!enabled || normalized.isEmpty()) {
+            return List.of();
+        }
+        // A name can match under several of its words; keep its best match
+        Map<String, Match> matches = new HashMap<>();
+        int scanned = 0;
+        for (Map.Entry<String, Integer> entry : contents.index.subMap(normalized, normalized + Character.MAX_VALUE).entrySet()) {
+            if (++scanned > maxScan) {
+                break;
+            }
+            String key = entry.getKey();
+            int typeStart = key.indexOf(SEPARATOR) + 1;
+            int textStart = typeStart;
+            while (key.charAt(textStart) > LATER_WORD) {
+                textStart++;
+            }
+            Suggestion.Type type = Suggestion.Type.valueOf(key.substring(typeStart, textStart));
+            boolean leading = key.charAt(textStart) == SEPARATOR;
+            String text = key.substring(textStart + 1);
+            Match match = new Match(new Suggestion(text, type, entry.getValue()), leading);
+            matches.merge(type.name() + SEPARATOR + text, match, (a, b) -> a.leading() ? a : b);
+        }
+        return matches.values().stream()
+            .sorted(Comparator.comparingInt((Match m) -> m.suggestion().weight()).reversed()
+                .thenComparing(m -> !m.leading())
+                .thenComparingInt(m -> m.suggestion().text().length())
+                .thenComparing(m -> m.suggestion().text()))
+            .limit(size)
+            .map(Match::suggestion)
+            .toList();
+    }
+
+    private record Match(Suggestion suggestion, boolean leading) {
+    }
+
+    private synchronized Rebuild startRebuild() {
+        rebuilding = new Rebuild();
+        return rebuilding;
+    }
+
+    private void addScanned(Rebuild rebuild, ProductDocument product) {
+        if (product.id() == null) {
+            return;
+        }
+        Set<String> keys = keysFor(product);
+        synchronized (this) {
+            if (rebuilding == rebuild && !rebuild.written.contains(product.id())) {
+                rebuild.contents.put(product.id(), keys);
+            }
+        }
+    }
+
+    private synchronized boolean finishRebuild(Rebuild rebuild) {
+        if (rebuilding != rebuild) {
+            return false;
+        }
+        contents = rebuild.contents;
+        rebuilding = null;
+        return true;
+    }
+
+    // Keeps serving the contents from before the rebuild
+    private synchronized void abandonRebuild(Rebuild rebuild) {
+        if (rebuilding == rebuild) {
+            rebuilding = null;
+        }
+    }
+
+    private static Set<String> keysFor(ProductDocument product) {
+        Set<String> keys = new LinkedHashSet<>();
+        String name = product.name() == null ? "" : product.name().trim();
+        String[] words = normalize(name).split(" ");
+        for (int i = 0; i < words.length; i++) {
+            String match = String.join(" ", List.of(words).subList(i, words.length));
+            if (!match.isEmpty()) {
+                keys.add(key(match, Suggestion.Type.name, i == 0 ? SEPARATOR : LATER_WORD, name));
+            }
+        }
+        if (product.tags() != null) {
+            for (String tag : product.tags()) {
+                String match = normalize(tag);
+                if (!match.isEmpty()) {
+                    keys.add(key(match, Suggestion.Type.tag, SEPARATOR, tag.trim()));
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static String key(String match, Suggestion.Type type, char position, String text) {
+        return match + SEPARATOR + type.name() + position + text;
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+}
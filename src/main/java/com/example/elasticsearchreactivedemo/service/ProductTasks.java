@@ -0,0 +1,177 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.elasticsearchreactivedemo.model.TaskProgress;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.SlicesCalculation;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryRequest;
+import co.elastic.clients.elasticsearch.core.UpdateByQueryRequest;
+import co.elastic.clients.elasticsearch.tasks.GetTasksResponse;
+import co.elastic.clients.json.JsonData;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// By-query operations over the product index run as Elasticsearch tasks: submitted without waiting, split into
+// one slice per shard, optionally throttled, and tracked through the task API, which keeps the result once the
+// task has finished. Nothing here holds a thread or an HTTP request while a task runs.
+@Component
+@Slf4j
+public class ProductTasks {
+
+    private static final String DELETE_BY_QUERY = "indices:data/write/delete/byquery";
+
+    private final ElasticsearchExecutor esExecutor;
+    private final ObjectMapper objectMapper;
+    // Submitted here and not yet seen completing
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    @Value("${elasticsearch.index.name}")
+    private String indexName;
+
+    // Default throttle for new tasks in documents per second; -1 is unthrottled
+    @Value("${elasticsearch.tasks.requests-per-second:-1}")
+    private float requestsPerSecond;
+
+    @Value("${elasticsearch.tasks.poll-interval:1s}")
+    private Duration pollInterval;
+
+    // Each wait for a task stays below the client's socket timeout
+    @Value("${elasticsearch.tasks.wait:20s}")
+    private Duration wait;
+
+    public ProductTasks(ElasticsearchExecutor esExecutor, ObjectMapper objectMapper) {
+        this.esExecutor = esExecutor;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    // Returns the task ID; throttle is in documents per second, null for the configured default
+    public Mono<String> deleteByQuery(Query query, Float throttle) {
+        DeleteByQueryRequest request = DeleteByQueryRequest.of(d -> d
+            .index(indexName)
+            .query(query)
+            .waitForCompletion(false)
+            .slices(s -> s.computed(SlicesCalculation.Auto))
+            .conflicts(Conflicts.Proceed) // documents changed meanwhile are counted, not fatal
+            .requestsPerSecond(throttle != null ? throttle : requestsPerSecond)
+            .refresh(true)
+        );
+        return esExecutor.execute("delete_by_query", c -> c.deleteByQuery(request), c -> c.deleteByQuery(request))
+            .map(response -> submitted(response.task()));
+    }
+
+    // Sets the given fields on every matching document
+    public Mono<String> updateByQuery(Query query, Map<String, Object> fields, Float throttle) {
+        UpdateByQueryRequest request = UpdateByQueryRequest.of(u -> u
+            .index(indexName)
+            .query(query)
+            .script(s -> s.inline(i -> i.source("ctx._source.putAll(params.doc)").params("doc", JsonData.of(fields))))
+            .waitForCompletion(false)
+            .slices(s -> s.computed(SlicesCalculation.Auto))
+            .conflicts(Conflicts.Proceed)
+            .requestsPerSecond(throttle != null ? throttle : requestsPerSecond)
+            .refresh(true)
+        );
+        return esExecutor.execute("update_by_query", c -> c.updateByQuery(request), c -> c.updateByQuery(request))
+            .map(response -> submitted(response.task()));
+    }
+
+    private String submitted(String taskId) {
+        pending.add(taskId);
+        log.info("Submitted task {}", taskId);
+        return taskId;
+    }
+
+    // Fails with NoSuchElementException for a task that is neither running nor has a stored result
+    public Mono<TaskProgress> progress(String taskId) {
+        return esExecutor.execute("get_task",
+                c -> c.tasks().get(g -> g.taskId(taskId)),
+                c -> c.tasks().get(g -> g.taskId(taskId)))
+            .map(response -> toProgress(taskId, response))
+            .onErrorMap(e -> e instanceof ElasticsearchException es && es.status() == 404,
+                e -> new NoSuchElementException("Unknown task " + taskId));
+    }
+
+    // Polls until the task completes; the last element is the final result
+    public Flux<TaskProgress> watch(String taskId) {
+        return progress(taskId)
+            .concatWith(Flux.interval(pollInterval).concatMap(tick -> progress(taskId)))
+            .takeUntil(TaskProgress::completed)
+            .distinctUntilChanged();
+    }
+
+    // Completes with the final result; waits on the server side rather than polling
+    public Mono<TaskProgress> await(String taskId) {
+        return esExecutor.execute("get_task",
+                c -> c.tasks().get(g -> g.taskId(taskId).waitForCompletion(true).timeout(t -> t.time(wait.toMillis() + "ms"))),
+                c -> c.tasks().get(g -> g.taskId(taskId).waitForCompletion(true).timeout(t -> t.time(wait.toMillis() + "ms"))))
+            // A wait that times out is answered with 408; simply wait again
+            .onErrorResume(e -> e instanceof ElasticsearchException es && es.status() == 408, e -> Mono.empty())
+            .flatMap(response -> response.completed() ? Mono.just(toProgress(taskId, response)) : Mono.empty())
+            .repeatWhenEmpty(Integer.MAX_VALUE, attempts -> attempts)
+            .doFinally(signal -> pending.remove(taskId));
+    }
+
+    // Changes the throttle of a running task; takes effect after the current batch
+    public Mono<Void> rethrottle(String taskId, float throttle) {
+        return progress(taskId)
+            .flatMap(task -> DELETE_BY_QUERY.equals(task.action())
+                ? esExecutor.execute("rethrottle",
+                    c -> c.deleteByQueryRethrottle(r -> r.taskId(taskId).requestsPerSecond(throttle)),
+                    c -> c.deleteByQueryRethrottle(r -> r.taskId(taskId).requestsPerSecond(throttle))).then()
+                : esExecutor.execute("rethrottle",
+                    c -> c.updateByQueryRethrottle(r -> r.taskId(taskId).requestsPerSecond(throttle)),
+                    c -> c.updateByQueryRethrottle(r -> r.taskId(taskId).requestsPerSecond(throttle))).then());
+    }
+
+    // Documents already processed stay deleted or updated
+    public Mono<Void> cancel(String taskId) {
+        return progress(taskId).then(esExecutor.execute("cancel_task",
+                c -> c.tasks().cancel(t -> t.taskId(taskId)),
+                c -> c.tasks().cancel(t -> t.taskId(taskId))))
+            .then();
+    }
+
+    // Counts come from the final response once completed, from the running status before; both are summed over slices
+    private TaskProgress toProgress(String taskId, GetTasksResponse response) {
+        JsonData counts = response.completed() && response.response() != null ? response.response() : response.task().status();
+        JsonNode status = counts != null ? readTree(counts) : objectMapper.createObjectNode();
+        long total = status.path("total").asLong();
+        long created = status.path("created").asLong();
+        long updated = status.path("updated").asLong();
+        long deleted = status.path("deleted").asLong();
+        long versionConflicts = status.path("version_conflicts").asLong();
+        long noops = status.path("noops").asLong();
+        long failed = status.path("failures").size();
+        long remaining = response.completed() ? 0 : Math.max(0, total - created - updated - deleted - versionConflicts - noops);
+        String error = response.error() != null ? response.error().reason() : null;
+        return new TaskProgress(taskId, response.task().action(), response.completed(), total, created, updated, deleted,
+            versionConflicts, noops, failed, remaining, (float) status.path("requests_per_second").asDouble(-1), error);
+    }
+
+    private JsonNode readTree(JsonData json) {
+        try {
+            return objectMapper.readTree(json.toJson().toString());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read task status", e);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+// Optional write-behind mode for single-product writes: a save or delete is acknowledged once it is durable in
+// the local WriteBehindLog and reaches Elasticsearch later, so API latency no longer follows cluster latency.
+// Until a write is drained the recent writes overlay serves it; only the latest write per ID is kept pending,
+// and it is drained with _bulk, one request at a time, retrying with backoff for as long as the cluster refuses.
+// Writes left in the log when the application stops are replayed and drained on the next start.
+@Component
+@Slf4j
+public class ProductWriteBehind {
+
+    // product is null for a delete
+    private record Pending(long seq, ProductDocument product) {
+    }
+
+    private final ElasticsearchExecutor esExecutor;
+    private final ObjectMapper objectMapper;
+    private final RecentWritesOverlay writesOverlay;
+    private final ProductReindexer reindexer;
+    private final ProductSuggester suggester;
+    private final boolean enabled;
+    private final WriteBehindLog writeLog;
+    // Latest accepted, not yet drained write per product ID
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // Emits after every drained batch, for callers waiting on a particular ID
+    private final Sinks.Many<Boolean> drained = Sinks.many().multicast().directBestEffort();
+    private final Counter dropped;
+    private volatile Mono<Void> inFlight = Mono.empty();
+    private volatile Duration backoff = Duration.ZERO;
+
+    @Value("${elasticsearch.index.name}")
+    private String indexName;
+
+    @Value("${elasticsearch.write.behind.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${elasticsearch.write.behind.retry-backoff:200ms}")
+    private Duration retryBackoff;
+
+    @Value("${elasticsearch.write.behind.max-backoff:10s}")
+    private Duration maxBackoff;
+
+    @Value("${elasticsearch.write.behind.drain-wait:30s}")
+    private Duration drainWait;
+
+    public ProductWriteBehind(ElasticsearchExecutor esExecutor, ObjectMapper objectMapper,
+                              RecentWritesOverlay writesOverlay, ProductReindexer reindexer, ProductSuggester suggester,
+                              @Value("${elasticsearch.write.behind.enabled:false}") boolean enabled,
+                              @Value("${elasticsearch.write.behind.path:./data/write-behind}") Path path,
+                              @Value("${elasticsearch.write.behind.segment-size:64MB}") DataSize segmentSize,
+                              // Appends within this window share one flush to disk
+                              @Value("${elasticsearch.write.behind.group-commit:2ms}") Duration groupCommit,
+                              MeterRegistry meterRegistry) {
+        this.esExecutor = esExecutor;
+        this.objectMapper = objectMapper;
+        this.writesOverlay = writesOverlay;
+        this.reindexer = reindexer;
+        this.suggester = suggester;
+        this.enabled = enabled;
+        if (enabled && !writesOverlay.isEnabled()) {
+            // Reads could not see accepted writes until they happen to be drained and refreshed
+            throw new IllegalStateException("Write-behind requires elasticsearch.write.consistency=overlay");
+        }
+        this.writeLog = enabled ? WriteBehindLog.open(path, (int) segmentSize.toBytes(), groupCommit) : null;
+        if (enabled) {
+            writeLog.replayed().forEach(entry -> accepted(entry.id(), new Pending(entry.seq(),
+                entry.op() == WriteBehindLog.Op.PUT ? readProduct(entry.source()) : null)));
+            log.info("Write-behind enabled, log in {}", path.toAbsolutePath());
+        }
+        Gauge.builder("products.write_behind.pending", pending, Map::size)
+            .description("Accepted writes not yet drained to Elasticsearch")
+            .register(meterRegistry);
+        this.dropped = Counter.builder("products.write_behind.dropped")
+            .description("Drained writes that Elasticsearch rejected permanently")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Completes once the write is durable locally; the product must have its ID
+    public Mono<Void> put(ProductDocument product) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsBytes(product))
+            .flatMap(source -> writeLog.append(WriteBehindLog.Op.PUT, product.id(), source))
+            .doOnNext(seq -> {
+                accepted(product.id(), new Pending(seq, product));
+                drain(Duration.ZERO);
+            })
+            .then();
+    }
+
+    public Mono<Void> delete(String id) {
+        return writeLog.append(WriteBehindLog.Op.DELETE, id, new byte[0])
+            .doOnNext(seq -> {
+                accepted(id, new Pending(seq, null));
+                drain(Duration.ZERO);
+            })
+            .then();
+    }
+
+    // Drops everything pending, e.g. before a delete-all; waits for a bulk request already in flight, so no
+    // write accepted before can land after the caller's next request
+    public Mono<Void> clear() {
+        return writeLog.append(WriteBehindLog.Op.CLEAR, "", new byte[0])
+            .doOnNext(seq -> pending.clear())
+            .then(Mono.defer(() -> inFlight.onErrorResume(e -> Mono.empty())));
+    }
+
+    // Completes once no write for the ID is pending, e.g. before a partial update that Elasticsearch applies
+    // to its stored copy. Subscribes to drain signals before looking, so a drain in between is not missed.
+    public Mono<Void> awaitDrained(String id) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return Flux.merge(drained.asFlux(), Mono.just(true))
+            .filter(signal -> !pending.containsKey(id))
+            .next()
+            .timeout(drainWait)
+            .then();
+    }
+
+    // A newer write to the same ID may have been accepted first when appends race; keep the higher sequence
+    private void accepted(String id, Pending write) {
+        pending.compute(id, (key, current) -> {
+            if (current != null && current.seq() > write.seq()) {
+                return current;
+            }
+            writesOverlay.hold(id, write.product(), write.seq());
+            return write;
+        });
+    }
+
+    // Replayed writes are drained once the index has been bootstrapped
+    @EventListener(ApplicationReadyEvent.class)
+    public void drainReplayed() {
+        if (enabled && !pending.isEmpty()) {
+            log.info("Draining {} replayed writes", pending.size());
+            drain(Duration.ZERO);
+        }
+    }
+
+    // One bulk request at a time; writes accepted meanwhile go into the next one
+    private void drain(Duration delay) {
+        if (pending.isEmpty() || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        Mono<Void> batch = Mono.delay(delay).then(Mono.defer(this::drainBatch)).cache();
+        inFlight = batch;
+        batch.subscribe(
+            v -> {
+            },
+            error -> {
+                backoff = nextBackoff();
+                log.warn("Write-behind drain failed, {} writes pending, retrying in {}: {}",
+                    pending.size(), backoff, error.getMessage());
+                finishDrain();
+            },
+            this::finishDrain);
+    }
+
+    private void finishDrain() {
+        draining.set(false);
+        drained.tryEmitNext(true);
+        drain(backoff);
+    }
+
+    private Mono<Void> drainBatch() {
+        List<Map.Entry<String, Pending>> batch = pending.entrySet().stream().limit(batchSize).toList();
+        if (batch.isEmpty()) {
+            return Mono.empty();
+        }
+        BulkRequest.Builder builder = new BulkRequest.Builder().index(indexName);
+        batch.forEach(e -> builder.operations(operation(e.getKey(), e.getValue())));
+        BulkRequest request = builder.build();
+        return esExecutor.executeBackground("bulk", c -> c.bulk(request), c -> c.bulk(request))
+            .flatMap(response -> completed(batch, response));
+    }
+
+    private static BulkOperation operation(String id, Pending write) {
+        return write.product() != null
+            ? BulkOperation.of(op -> op.index(i -> i.id(id).document(write.product())))
+            : BulkOperation.of(op -> op.delete(d -> d.id(id)));
+    }
+
+    // Items come back in request order. Drained writes are released to the overlay's normal expiry and
+    // mirrored into a running reindex; rejected ones stay pending and back off the next drain.
+    private Mono<Void> completed(List<Map.Entry<String, Pending>> batch, BulkResponse response) {
+        List<ProductDocument> written = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        boolean retry = false;
+        List<BulkResponseItem> items = response.items();
+        for (int i = 0; i < items.size(); i++) {
+            BulkResponseItem item = items.get(i);
+            String id = batch.get(i).getKey();
+            Pending write = batch.get(i).getValue();
+            boolean missing = write.product() == null && item.status() == 404;
+            if (item.error() != null && !missing) {
+                if (ProductBulkIngester.isRetryable(item.status())) {
+                    retry = true;
+                    continue;
+                }
+                log.error("Dropping write-behind {} of {}: {} {}", write.product() != null ? "write" : "delete",
+                    id, item.status(), item.error().reason());
+                dropped.increment();
+            } else if (write.product() != null) {
+                written.add(write.product());
+                suggester.add(write.product());
+            } else {
+                deleted.add(id);
+                suggester.remove(id);
+            }
+            // Only if no newer write was accepted in the meantime
+            pending.remove(id, write);
+            writesOverlay.release(id, write.seq());
+            // Not waited for: should it be lost in a crash, the write is only drained once more after restart
+            writeLog.drained(id, write.seq()).subscribe(seq -> {
+            }, e -> log.warn("Could not record drained write of {}: {}", id, e.getMessage()));
+        }
+        backoff = retry ? nextBackoff() : Duration.ZERO;
+        writeLog.truncate(pending.values().stream().mapToLong(Pending::seq).min().orElse(Long.MAX_VALUE));
+        log.debug("Drained {} of {} writes in {} ms, {} pending", written.size() + deleted.size(), batch.size(),
+            response.took(), pending.size());
+        return reindexer.mirrorWrites(written)
+            .then(Flux.fromIterable(deleted).concatMap(reindexer::mirrorDelete).then());
+    }
+
+    private Duration nextBackoff() {
+        Duration next = backoff.isZero() ? retryBackoff : backoff.multipliedBy(2);
+        return next.compareTo(maxBackoff) > 0 ? maxBackoff : next;
+    }
+
+    private ProductDocument readProduct(byte[] source) {
+        try {
+            return objectMapper.readValue(source, ProductDocument.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable write-behind entry", e);
+        }
+    }
+
+    // Pending writes stay in the log for the next start
+    @PreDestroy
+    public void close() {
+        if (enabled) {
+            writeLog.close();
+            if (!pending.isEmpty()) {
+                log.info("Stopping with {} writes not yet drained", pending.size());
+            }
+        }
+    }
+}
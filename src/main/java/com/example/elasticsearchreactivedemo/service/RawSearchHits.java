@@ -0,0 +1,213 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.HttpEntity;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.ProductDocumentCodec;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Turns a raw _search response into the same JSON array the search endpoint returns, one hit at a time: each
+// hit's _source is read with its _id bound as "id" and written straight back through ProductDocumentCodec, so
+// the output has exactly the fields, order and nulls of a decoded search, without a SearchResponse or any other
+// object graph behind it. Hits without a _source are skipped, as they are when decoding. Output is cut into
+// DataBuffers of roughly CHUNK_SIZE bytes as the client consumes them.
+// The response's took and its number of hits are passed on once it has been read, for the per-operation metrics
+// the client would otherwise record from a SearchResponse.
+@Component
+public class RawSearchHits {
+
+    // took is -1 if the response did not include it
+    public interface Completion {
+
+        void completed(long took, int hits);
+    }
+
+    public record Decoded(long took, int hits, List<ProductDocument> products) {
+    }
+
+    // What has been seen of a response so far
+    private static final class Progress {
+
+        long took = -1;
+        int hits;
+    }
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    private final boolean skipNulls;
+
+    public RawSearchHits(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+        // Same rule as ProductDocumentCodec.Serializer, so raw hits keep or drop nulls like decoded ones
+        JsonInclude.Include inclusion = objectMapper.getSerializationConfig()
+            .getDefaultPropertyInclusion(ProductDocument.class).getValueInclusion();
+        this.skipNulls = inclusion != JsonInclude.Include.ALWAYS && inclusion != JsonInclude.Include.USE_DEFAULTS;
+    }
+
+    public Flux<DataBuffer> write(HttpEntity responseBody, DataBufferFactory bufferFactory, Completion completion) {
+        return Flux.using(
+            () -> new HitCopier(jsonFactory.createParser(responseBody.getContent()), completion),
+            copier -> Flux.<DataBuffer>generate(sink -> {
+                DataBuffer buffer = bufferFactory.allocateBuffer(CHUNK_SIZE);
+                try {
+                    boolean more = copier.writeChunk(buffer);
+                    sink.next(buffer);
+                    if (!more) {
+                        sink.complete();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    DataBufferUtils.release(buffer);
+                    sink.error(e);
+                }
+            }),
+            HitCopier::close);
+    }
+
+    // For results that are already decoded, e.g. merged with recent writes
+    public Mono<DataBuffer> write(List<ProductDocument> products, DataBufferFactory bufferFactory) {
+        return Mono.fromCallable(() -> bufferFactory.wrap(objectMapper.writeValueAsBytes(products)));
+    }
+
+    // Decodes the hits into documents in one pass over the response, each built with its _id already bound, for
+    // results that still go through the search cache and the recent writes overlay. Hits without a _source are skipped.
+    public Decoded decode(HttpEntity responseBody) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(responseBody.getContent())) {
+            Progress progress = new Progress();
+            List<ProductDocument> products = new ArrayList<>();
+            if (moveToHits(parser, progress)) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    progress.hits++;
+                    ProductDocument product = decodeHit(parser);
+                    if (product != null) {
+                        products.add(product);
+                    }
+                }
+            }
+            return new Decoded(progress.took, progress.hits, products);
+        }
+    }
+
+    private static ProductDocument decodeHit(JsonParser parser) throws IOException {
+        String id = null;
+        ProductDocument product = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals("_id")) {
+                id = parser.getText();
+            } else if (field.equals("_source") && parser.currentToken() == JsonToken.START_OBJECT) {
+                product = ProductDocumentCodec.read(parser, id);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        // Elasticsearch writes _id before _source; should it ever not, the id is attached afterwards
+        return product == null ? null : product.withId(id);
+    }
+
+    // Positions the parser on the hits.hits array, skipping everything before it but took, which Elasticsearch
+    // writes first
+    private static boolean moveToHits(JsonParser parser, Progress progress) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("took") && value == JsonToken.VALUE_NUMBER_INT) {
+                progress.took = parser.getLongValue();
+                continue;
+            }
+            if (field.equals("hits") && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String inner = parser.currentName();
+                    JsonToken innerValue = parser.nextToken();
+                    if (inner.equals("hits") && innerValue == JsonToken.START_ARRAY) {
+                        return true;
+                    }
+                    parser.skipChildren();
+                }
+                return false;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private final class HitCopier {
+
+        private final JsonParser parser;
+        private final Completion completion;
+        private final Progress progress = new Progress();
+        private boolean started;
+        private boolean firstHit = true;
+
+        HitCopier(JsonParser parser, Completion completion) {
+            this.parser = parser;
+            this.completion = completion;
+        }
+
+        // Returns false once the closing bracket has been written
+        boolean writeChunk(DataBuffer buffer) throws IOException {
+            try (JsonGenerator generator = jsonFactory.createGenerator(buffer.asOutputStream())) {
+                // Every chunk gets a fresh generator, so the array brackets and commas are written by hand
+                generator.setRootValueSeparator(null);
+                if (!started) {
+                    started = true;
+                    generator.writeRaw('[');
+                    if (!moveToHits(parser, progress)) {
+                        generator.writeRaw(']');
+                        completion.completed(progress.took, 0);
+                        return false;
+                    }
+                }
+                while (buffer.writePosition() + generator.getOutputBuffered() < CHUNK_SIZE) {
+                    JsonToken token = parser.nextToken();
+                    if (token != JsonToken.START_OBJECT) {
+                        generator.writeRaw(']');
+                        completion.completed(progress.took, progress.hits);
+                        return false;
+                    }
+                    progress.hits++;
+                    ProductDocument product = decodeHit(parser);
+                    if (product == null) {
+                        continue;
+                    }
+                    if (!firstHit) {
+                        generator.writeRaw(',');
+                    }
+                    firstHit = false;
+                    ProductDocumentCodec.write(product, generator, skipNulls);
+                }
+                return true;
+            }
+        }
+
+        void close() {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                // Nothing left to release; the response is already fully received
+            }
+        }
+    }
+}
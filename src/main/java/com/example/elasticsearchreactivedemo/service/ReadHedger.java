@@ -0,0 +1,153 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+// Hedged reads: when a read has not answered within the tracked percentile latency of its operation, the same
+// read is sent once more with a different search preference, which routes it to a (most likely) different shard
+// copy. Whichever answers first wins and the other request is cancelled. Each read earns budget hedges, at most
+// one hedge is sent per token, so hedging adds at most that share of extra reads even when the cluster is slow
+// everywhere. A failed hedge never fails the read, the original request still decides.
+@Component
+@Slf4j
+public class ReadHedger {
+
+    // Recent latencies per operation; the hedge delay is recomputed from them every RECOMPUTE_EVERY samples
+    private static final int SAMPLES = 1024;
+    private static final int RECOMPUTE_EVERY = 64;
+    // Tokens that can be saved up for a burst of slow reads
+    private static final double MAX_TOKENS = 10;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final double budget;
+    private final long minDelayNanos;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Tracker> trackers = new ConcurrentHashMap<>();
+
+    public ReadHedger(@Value("${elasticsearch.hedge.enabled:false}") boolean enabled,
+                      @Value("${elasticsearch.hedge.percentile:0.95}") double percentile,
+                      // Extra reads as a share of all reads
+                      @Value("${elasticsearch.hedge.budget:0.05}") double budget,
+                      @Value("${elasticsearch.hedge.min-delay:2ms}") Duration minDelay,
+                      MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.budget = budget;
+        this.minDelayNanos = minDelay.toNanos();
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // call receives the preference to send, null for the original request
+    public <T> Mono<T> hedge(String operation, Function<String, Mono<T>> call) {
+        if (!enabled) {
+            return call.apply(null);
+        }
+        Tracker tracker = trackers.computeIfAbsent(operation, Tracker::new);
+        return Mono.defer(() -> {
+            tracker.earn();
+            long start = System.nanoTime();
+            Mono<T> original = call.apply(null)
+                .doOnSuccess(result -> tracker.record(System.nanoTime() - start))
+                // A loser cancelled by the hedge took at least this long, which still belongs in the percentile
+                .doOnCancel(() -> tracker.record(System.nanoTime() - start));
+            long delayNanos = tracker.delayNanos();
+            if (delayNanos == Long.MAX_VALUE) {
+                return original;
+            }
+            Mono<T> hedged = Mono.delay(Duration.ofNanos(delayNanos))
+                .flatMap(tick -> {
+                    if (!tracker.trySpend()) {
+                        return Mono.never(); // over budget, wait for the original
+                    }
+                    tracker.sent.increment();
+                    return call.apply("hedge-" + UUID.randomUUID())
+                        .doOnSuccess(result -> tracker.won.increment())
+                        .onErrorResume(e -> {
+                            log.debug("Hedged {} failed: {}", operation, e.getMessage());
+                            return Mono.never();
+                        });
+                });
+            return Mono.firstWithSignal(original, hedged);
+        });
+    }
+
+    private final class Tracker {
+
+        private final long[] samples = new long[SAMPLES];
+        private final Counter sent;
+        private final Counter won;
+
+        // Guarded by this
+        private int next;
+        private long count; // an int would wrap after 2^31 samples and stop the recomputes
+        private double tokens;
+        private volatile long delayNanos = Long.MAX_VALUE; // no hedging until there are enough samples
+
+        Tracker(String operation) {
+            this.sent = Counter.builder("elasticsearch.hedge.sent")
+                .description("Reads sent a second time because the first had not answered within the hedge delay")
+                .tag("operation", operation)
+                .register(meterRegistry);
+            this.won = Counter.builder("elasticsearch.hedge.won")
+                .description("Hedged reads that answered before the original")
+                .tag("operation", operation)
+                .register(meterRegistry);
+            Gauge.builder("elasticsearch.hedge.delay", this, t -> t.delayNanos == Long.MAX_VALUE ? Double.NaN : t.delayNanos / 1e6)
+                .description("Current hedge delay in milliseconds, the tracked latency percentile")
+                .tag("operation", operation)
+                .register(meterRegistry);
+        }
+
+        synchronized void earn() {
+            tokens = Math.min(MAX_TOKENS, tokens + budget);
+        }
+
+        synchronized boolean trySpend() {
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+
+        long delayNanos() {
+            return delayNanos;
+        }
+
+        synchronized void record(long latencyNanos) {
+            samples[next] = latencyNanos;
+            next = (next + 1) % SAMPLES;
+            count++;
+            if (count >= RECOMPUTE_EVERY && count % RECOMPUTE_EVERY == 0) {
+                long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, SAMPLES));
+                Arrays.sort(sorted);
+                long value = sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+                delayNanos = Math.max(minDelayNanos, value);
+            }
+        }
+    }
+
+    // For tests
+    long delayNanos(String operation) {
+        Tracker tracker = trackers.get(operation);
+        return tracker == null ? Long.MAX_VALUE : tracker.delayNanos();
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+
+import co.elastic.clients.elasticsearch._types.Refresh;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+// Keeps recently written and deleted documents in memory until the index's periodic refresh has made them
+// searchable, so writes do not have to force a refresh to give clients read-your-writes.
+// In "refresh" consistency mode the overlay is bypassed and every write forces a refresh as before.
+// Writes held for the write-behind log do not expire until they have been drained to the index.
+// Expired entries are pruned as new ones arrive, oldest first. Once max-entries live entries are pending, writes
+// wait for the next refresh instead, and as they are visible when acknowledged they are not recorded here.
+@Component
+@Slf4j
+public class RecentWritesOverlay {
+
+    public enum Consistency {
+        REFRESH,
+        OVERLAY
+    }
+
+    // doc == null marks a delete; heldSeq is the write-behind sequence number of a held write, -1 otherwise
+    public record Entry(ProductDocument doc, long expiresAt, long heldSeq) {
+
+        public boolean isDelete() {
+            return doc == null;
+        }
+
+        boolean isHeld() {
+            return heldSeq >= 0;
+        }
+    }
+
+    // When an entry was set to expire, in the order they were recorded
+    private record Expiry(String id, long at) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Expiry> expiries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger held = new AtomicInteger();
+    private final Consistency consistency;
+    private final int maxEntries;
+    private final long ttlNanos;
+    // After a delete-all, hits older than this are hidden until the refresh catches up
+    private volatile long clearedUntil = System.nanoTime();
+    // Expiry of the most recent entry; until then the index may still be missing some writes
+    private volatile long pendingUntil = System.nanoTime();
+
+    public RecentWritesOverlay(@Value("${elasticsearch.write.consistency:refresh}") Consistency consistency,
+                               @Value("${elasticsearch.write.overlay.max-entries:10000}") int maxEntries,
+                               // Must be longer than the index refresh_interval (1s by default)
+                               @Value("${elasticsearch.write.overlay.ttl:2s}") Duration ttl) {
+        this.consistency = consistency;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        log.info("Write consistency mode: {}", consistency);
+    }
+
+    public boolean isEnabled() {
+        return consistency == Consistency.OVERLAY;
+    }
+
+    // Refresh policy for the next write. When the overlay is full, wait for the next refresh instead of forcing one.
+    public Refresh refreshPolicy() {
+        if (!isEnabled()) {
+            return Refresh.True;
+        }
+        pruneExpired();
+        return entries.size() < maxEntries ? Refresh.False : Refresh.WaitFor;
+    }
+
+    // refresh is the policy the write was made with; only writes not yet visible to searches are recorded
+    public void recordWrite(ProductDocument product, Refresh refresh) {
+        if (isEnabled()) {
+            record(product.id(), product, refresh);
+        }
+    }
+
+    public void recordDelete(String id, Refresh refresh) {
+        if (isEnabled()) {
+            record(id, null, refresh);
+        }
+    }
+
+    private void record(String id, ProductDocument doc, Refresh refresh) {
+        if (refresh == Refresh.False) {
+            put(id, new Entry(doc, expiry(), -1));
+        } else {
+            // Already searchable, but an earlier pending write to the same ID must not be served over it
+            entries.computeIfPresent(id, (key, entry) -> entry.isHeld() ? entry : null);
+        }
+    }
+
+    // A write accepted by the write-behind log, served from here until release; doc == null for a delete
+    public void hold(String id, ProductDocument doc, long seq) {
+        if (isEnabled()) {
+            put(id, new Entry(doc, expiry(), seq));
+        }
+    }
+
+    // The held write has reached the index; from now on it only has to outlive the next refresh.
+    // A newer write to the same ID stays as it is.
+    public void release(String id, long seq) {
+        entries.computeIfPresent(id, (key, entry) -> {
+            if (entry.heldSeq() != seq) {
+                return entry;
+            }
+            held.decrementAndGet();
+            Entry released = new Entry(entry.doc(), expiry(), -1);
+            expiries.add(new Expiry(id, released.expiresAt()));
+            return released;
+        });
+    }
+
+    private void put(String id, Entry entry) {
+        entries.compute(id, (key, previous) -> {
+            if (previous != null && previous.isHeld()) {
+                held.decrementAndGet();
+            }
+            if (entry.isHeld()) {
+                held.incrementAndGet();
+            }
+            return entry;
+        });
+        expiries.add(new Expiry(id, entry.expiresAt()));
+        pruneExpired();
+    }
+
+    public void recordDeleteAll() {
+        if (isEnabled()) {
+            entries.keySet().forEach(id -> entries.computeIfPresent(id, (key, entry) -> {
+                if (entry.isHeld()) {
+                    held.decrementAndGet();
+                }
+                return null;
+            }));
+            clearedUntil = expiry();
+        }
+    }
+
+    // How long until every write recorded so far is guaranteed to be visible to searches; while writes are held
+    // that is unknown, and at least one more ttl
+    public Duration pendingVisibility() {
+        long remaining = pendingUntil - System.nanoTime();
+        if (held.get() > 0) {
+            remaining = Math.max(remaining, ttlNanos);
+        }
+        return remaining > 0 ? Duration.ofNanos(remaining) : Duration.ZERO;
+    }
+
+    private long expiry() {
+        long expiresAt = System.nanoTime() + ttlNanos;
+        pendingUntil = expiresAt;
+        return expiresAt;
+    }
+
+    public Optional<Entry> lookup(String id) {
+        return Optional.ofNullable(live(entries.get(id), System.nanoTime()));
+    }
+
+    // Overlay pending writes onto search hits: drop deleted or no longer matching hits, replace stale ones,
+    // and append matching documents the index cannot see yet
+    public Flux<ProductDocument> mergeSearch(String query, Flux<ProductDocument> hits) {
+        return mergeSearch(query, hits, ProductDocument::id, Function.identity());
+    }
+
+    // Same for hits of another shape, e.g. field projections; pending documents are converted with toHit
+    public <T> Flux<T> mergeSearch(String query, Flux<T> hits, Function<T, String> idOf, Function<ProductDocument, T> toHit) {
+        return isEnabled() ? Flux.defer(() -> merge(query, hits, idOf, toHit)) : hits;
+    }
+
+    private <T> Flux<T> merge(String query, Flux<T> hits, Function<T, String> idOf, Function<ProductDocument, T> toHit) {
+        long now = System.nanoTime();
+        boolean cleared = clearedUntil - now > 0;
+        Map<String, Entry> pending = new HashMap<>();
+        entries.forEach((id, entry) -> {
+            if (live(entry, now) != null) {
+                pending.put(id, entry);
+            }
+        });
+        if (pending.isEmpty() && !cleared) {
+            return hits;
+        }
+
+        Set<String> terms = tokenize(query);
+        Set<String> seen = new HashSet<>();
+        Flux<T> merged = hits
+            .mapNotNull(hit -> {
+                String id = idOf.apply(hit);
+                Entry entry = pending.get(id);
+                if (entry == null) {
+                    return cleared ? null : hit;
+                }
+                seen.add(id);
+                return entry.doc() != null && matches(entry.doc(), terms) ? toHit.apply(entry.doc()) : null;
+            });
+        return merged.concatWith(Flux.defer(() -> Flux.fromIterable(pending.entrySet())
+            .filter(e -> !seen.contains(e.getKey()) && e.getValue().doc() != null)
+            .map(e -> e.getValue().doc())
+            .filter(doc -> matches(doc, terms))
+            .map(toHit)));
+    }
+
+    private Entry live(Entry entry, long now) {
+        return entry != null && (entry.isHeld() || entry.expiresAt() - now > 0) ? entry : null;
+    }
+
+    // Entries share one ttl, so the queue is in expiry order and pruning stops at the first one still live.
+    // A queued expiry can be outdated by a newer write to the same ID; the entry's own expiry decides.
+    private void pruneExpired() {
+        long now = System.nanoTime();
+        Expiry next;
+        while ((next = expiries.peek()) != null && next.at() - now <= 0) {
+            if (expiries.remove(next)) {
+                entries.computeIfPresent(next.id(), (key, entry) -> !entry.isHeld() && entry.expiresAt() - now <= 0 ? null : entry);
+            }
+        }
+    }
+
+    // For tests
+    int size() {
+        return entries.size();
+    }
+
+    // Approximates the multi_match query locally: any query term matching any analyzed field term
+    static boolean matches(ProductDocument doc, Set<String> terms) {
+        if (terms.isEmpty()) {
+            return false;
+        }
+        Set<String> docTerms = new HashSet<>();
+        docTerms.addAll(tokenize(doc.name()));
+        docTerms.addAll(tokenize(doc.description()));
+        docTerms.addAll(tokenize(doc.category()));
+        if (doc.tags() != null) {
+            doc.tags().forEach(tag -> docTerms.addAll(tokenize(tag)));
+        }
+        return terms.stream().anyMatch(docTerms::contains);
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new HashSet<>();
+        if (text != null) {
+            for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!token.isEmpty()) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return tokens;
+    }
+}
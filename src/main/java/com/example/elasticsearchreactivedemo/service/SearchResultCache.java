@@ -0,0 +1,115 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Caches search results by normalized query text. Every write bumps a generation that is part of the key,
+// so results computed before a write are never served after it; old generations simply age out.
+// Memory is bounded by the estimated size of the cached hits rather than by entry count.
+@Component
+public class SearchResultCache {
+
+    private record Key(String query, long generation) {
+    }
+
+    private record Result(List<ProductDocument> documents, long ttlNanos) {
+    }
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AsyncCache<Key, Result> cache;
+    private final RecentWritesOverlay writesOverlay;
+    private final boolean enabled;
+    private final Duration ttl;
+
+    public SearchResultCache(@Value("${elasticsearch.cache.search.enabled:true}") boolean enabled,
+                             @Value("${elasticsearch.cache.search.maximum-size:32MB}") DataSize maximumSize,
+                             @Value("${elasticsearch.cache.search.ttl:30s}") Duration ttl,
+                             RecentWritesOverlay writesOverlay,
+                             MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.writesOverlay = writesOverlay;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maximumSize.toBytes())
+            .weigher((Key key, Result result) -> weigh(key, result))
+            .expireAfter(new Expiry<Key, Result>() {
+                @Override
+                public long expireAfterCreate(Key key, Result result, long currentTime) {
+                    return result.ttlNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(Key key, Result result, long currentTime, long currentDuration) {
+                    return result.ttlNanos();
+                }
+
+                @Override
+                public long expireAfterRead(Key key, Result result, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products.search");
+    }
+
+    public Flux<ProductDocument> get(String query, Function<String, Flux<ProductDocument>> loader) {
+        String normalized = normalize(query);
+        if (!enabled) {
+            return loader.apply(normalized);
+        }
+        return Mono.fromFuture(() -> cache.get(new Key(normalized, generation.get()),
+                (key, executor) -> load(key, loader).toFuture()), true)
+            .flatMapIterable(Result::documents);
+    }
+
+    private Mono<Result> load(Key key, Function<String, Flux<ProductDocument>> loader) {
+        // While writes are still waiting for a refresh, the index answer is about to change without another
+        // write bumping the generation, so only keep it until those writes become visible
+        Duration pending = writesOverlay.pendingVisibility();
+        long ttlNanos = (pending.isZero() ? ttl : pending).toNanos();
+        return loader.apply(key.query())
+            .collectList()
+            .map(documents -> new Result(documents, ttlNanos));
+    }
+
+    public void onWrite() {
+        generation.incrementAndGet();
+    }
+
+    // For tests; runs pending evictions first
+    long size() {
+        cache.synchronous().cleanUp();
+        return cache.synchronous().estimatedSize();
+    }
+
+    // Case and whitespace differences do not change the analyzed multi_match query
+    static String normalize(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static int weigh(Key key, Result result) {
+        int weight = 64 + key.query().length();
+        for (ProductDocument document : result.documents()) {
+            weight += ProductBulkIngester.estimateSize(document);
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+// Append-only log of product writes in fixed-size, memory-mapped segment files. Appends are copied into the
+// mapping under a lock and acknowledged once forced to disk; appends arriving within group-commit of each other
+// share one force. Records are [length][crc32c][seq][op][id][source], a zero length marks the end of a segment,
+// and a record whose checksum does not match (a torn write) ends replay of its segment.
+// Once a write has reached Elasticsearch a DRAINED record with its sequence number follows it. Opening the log
+// replays every segment, keeps the last record per document ID unless it was drained, and rewrites those into a
+// fresh segment, so the log never grows beyond the writes that have not reached Elasticsearch yet.
+@Slf4j
+public class WriteBehindLog implements AutoCloseable {
+
+    public enum Op {
+        PUT,
+        DELETE,
+        CLEAR, // everything before it is void
+        DRAINED // the write to the ID with the sequence number in source has reached Elasticsearch
+    }
+
+    // source is the document's JSON for a PUT, the drained sequence number for a DRAINED and empty otherwise;
+    // id is empty for a CLEAR
+    public record Entry(long seq, Op op, String id, byte[] source) {
+    }
+
+    private record Segment(long number, Path path, long maxSeq) {
+    }
+
+    private static final int HEADER_BYTES = 8; // length and checksum
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long groupCommitNanos;
+    private final Scheduler committer = Schedulers.newSingle("write-behind-commit");
+    // Closed segments, oldest first, each deleted once all of its writes have been drained
+    private final List<Segment> closed = new ArrayList<>();
+    private final List<Entry> replayed;
+
+    // Guarded by this
+    private long segmentNumber;
+    private Path segmentPath;
+    private MappedByteBuffer segment;
+    private long segmentMaxSeq = -1;
+    private long nextSeq;
+    private final List<MappedByteBuffer> unforced = new ArrayList<>();
+    private List<MonoSink<Long>> waiting = new ArrayList<>();
+    private List<Long> waitingSeqs = new ArrayList<>();
+    private boolean commitScheduled;
+
+    private WriteBehindLog(Path directory, int segmentSize, Duration groupCommit) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.groupCommitNanos = groupCommit.toNanos();
+        this.replayed = List.copyOf(recover());
+    }
+
+    public static WriteBehindLog open(Path directory, int segmentSize, Duration groupCommit) {
+        return new WriteBehindLog(directory, segmentSize, groupCommit);
+    }
+
+    // The writes found on disk when the log was opened, at most one per document ID, oldest first
+    public List<Entry> replayed() {
+        return replayed;
+    }
+
+    // Completes with the entry's sequence number once it is on disk
+    public Mono<Long> append(Op op, String id, byte[] source) {
+        return Mono.create(sink -> {
+            try {
+                long seq = write(op, id, source);
+                enqueueCommit(sink, seq);
+            } catch (RuntimeException e) {
+                sink.error(e);
+            }
+        });
+    }
+
+    private synchronized long write(Op op, String id, byte[] source) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 8 + 1 + 2 + idBytes.length + 4 + source.length;
+        if (HEADER_BYTES + bodyLength + 4 > segmentSize) {
+            throw new IllegalArgumentException("Write of " + bodyLength + " bytes does not fit a " + segmentSize + " byte segment");
+        }
+        if (segment.remaining() < HEADER_BYTES + bodyLength + 4) { // keep room for the end marker
+            roll();
+        }
+        long seq = nextSeq++;
+        int start = segment.position();
+        segment.position(start + HEADER_BYTES);
+        segment.putLong(seq).put((byte) op.ordinal()).putShort((short) idBytes.length).put(idBytes)
+            .putInt(source.length).put(source);
+        CRC32C crc = new CRC32C();
+        crc.update(segment.slice(start + HEADER_BYTES, bodyLength));
+        // The length goes in last, so a record is only ever seen complete or not at all
+        segment.putInt(start + 4, (int) crc.getValue());
+        segment.putInt(start, bodyLength);
+        segmentMaxSeq = seq;
+        if (unforced.isEmpty() || unforced.get(unforced.size() - 1) != segment) {
+            unforced.add(segment);
+        }
+        return seq;
+    }
+
+    private synchronized void enqueueCommit(MonoSink<Long> sink, long seq) {
+        waiting.add(sink);
+        waitingSeqs.add(seq);
+        if (!commitScheduled) {
+            commitScheduled = true;
+            committer.schedule(this::commit, groupCommitNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // One force for everything appended since the last commit
+    private void commit() {
+        List<MappedByteBuffer> toForce;
+        List<MonoSink<Long>> sinks;
+        List<Long> seqs;
+        synchronized (this) {
+            toForce = List.copyOf(unforced);
+            unforced.clear();
+            sinks = waiting;
+            seqs = waitingSeqs;
+            waiting = new ArrayList<>();
+            waitingSeqs = new ArrayList<>();
+            commitScheduled = false;
+        }
+        try {
+            toForce.forEach(MappedByteBuffer::force);
+        } catch (RuntimeException e) {
+            log.error("Failed to force write-behind log to disk", e);
+            sinks.forEach(sink -> sink.error(e));
+            return;
+        }
+        for (int i = 0; i < sinks.size(); i++) {
+            sinks.get(i).success(seqs.get(i));
+        }
+    }
+
+    // Records that the write with the given sequence number has reached Elasticsearch, so it is not replayed
+    public Mono<Long> drained(String id, long seq) {
+        return append(Op.DRAINED, id, ByteBuffer.allocate(Long.BYTES).putLong(seq).array());
+    }
+
+    // Deletes closed segments whose writes are all older than the oldest write still waiting to be drained
+    public void truncate(long oldestPendingSeq) {
+        List<Segment> drained = new ArrayList<>();
+        synchronized (this) {
+            while (!closed.isEmpty() && closed.get(0).maxSeq() < oldestPendingSeq) {
+                drained.add(closed.remove(0));
+            }
+        }
+        drained.forEach(s -> delete(s.path()));
+    }
+
+    public synchronized long segmentCount() {
+        return closed.size() + 1;
+    }
+
+    private void roll() {
+        segment.force();
+        unforced.remove(segment);
+        closed.add(new Segment(segmentNumber, segmentPath, segmentMaxSeq));
+        openSegment(segmentNumber + 1);
+    }
+
+    private void openSegment(long number) {
+        segmentNumber = number;
+        segmentPath = directory.resolve(String.format("%s%012d%s", PREFIX, number, SUFFIX));
+        try (RandomAccessFile file = new RandomAccessFile(segmentPath.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize); // the mapping outlives the channel
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create write-behind segment " + segmentPath, e);
+        }
+        segmentMaxSeq = -1;
+    }
+
+    // Replays all segments, rewrites the latest write per ID into a fresh segment and deletes the old ones
+    private List<Entry> recover() {
+        List<Path> existing;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                existing = files.filter(p -> p.getFileName().toString().startsWith(PREFIX)).sorted().toList();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-behind log in " + directory, e);
+        }
+        Map<String, Entry> latest = new LinkedHashMap<>();
+        long maxSeq = -1;
+        long lastNumber = 0;
+        for (Path path : existing) {
+            for (Entry entry : read(path)) {
+                maxSeq = Math.max(maxSeq, entry.seq());
+                if (entry.op() == Op.CLEAR) {
+                    latest.clear();
+                    continue;
+                }
+                if (entry.op() == Op.DRAINED) {
+                    long drainedSeq = ByteBuffer.wrap(entry.source()).getLong();
+                    Entry write = latest.get(entry.id());
+                    if (write != null && write.seq() <= drainedSeq) {
+                        latest.remove(entry.id());
+                    }
+                    continue;
+                }
+                latest.remove(entry.id()); // re-insert so the map stays in write order
+                latest.put(entry.id(), entry);
+            }
+            lastNumber = Math.max(lastNumber, number(path));
+        }
+        nextSeq = maxSeq + 1;
+        openSegment(lastNumber + 1);
+        Collection<Entry> live = latest.values();
+        for (Entry entry : live) {
+            rewrite(entry);
+        }
+        segment.force();
+        existing.forEach(WriteBehindLog::delete);
+        if (!existing.isEmpty()) {
+            log.info("Replayed write-behind log: {} segments, {} pending writes", existing.size(), live.size());
+        }
+        return new ArrayList<>(live);
+    }
+
+    // Keeps the original sequence number, so order and the truncation watermark are unaffected
+    private void rewrite(Entry entry) {
+        long next = nextSeq;
+        nextSeq = entry.seq();
+        write(entry.op(), entry.id(), entry.source());
+        nextSeq = next;
+    }
+
+    static List<Entry> read(Path path) {
+        List<Entry> entries = new ArrayList<>();
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r");
+             FileChannel channel = file.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                CRC32C crc = new CRC32C();
+                crc.update(buffer.slice(buffer.position(), length));
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("Write-behind segment {} ends with a torn write at byte {}", path, buffer.position() - HEADER_BYTES);
+                    break;
+                }
+                long seq = buffer.getLong();
+                Op op = Op.values()[buffer.get()];
+                byte[] id = new byte[buffer.getShort()];
+                buffer.get(id);
+                byte[] source = new byte[buffer.getInt()];
+                buffer.get(source);
+                entries.add(new Entry(seq, op, new String(id, StandardCharsets.UTF_8), source));
+            }
+        } catch (IOException | BufferUnderflowException e) {
+            log.warn("Stopped reading write-behind segment {}: {}", path, e.toString());
+        }
+        return entries;
+    }
+
+    private static long number(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete write-behind segment {}: {}", path, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        commit(); // acknowledge anything still waiting for a group commit
+        committer.dispose();
+    }
+}
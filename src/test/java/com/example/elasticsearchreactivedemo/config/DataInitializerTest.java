@@ -0,0 +1,131 @@
+package com.example.elasticsearchreactivedemo.config;
+
+import com.example.elasticsearchreactivedemo.model.BulkIngestResult;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DataInitializerTest {
+
+    private static final String ARRAY = """
+        [
+          {"id": "1", "name": "Laptop", "price": 1200.99, "category": "Electronics", "tags": ["computer"]},
+          {"id": "2", "name": "Desk", "price": 150.0, "category": "Furniture"}
+        ]
+        """;
+    private static final String NDJSON = """
+        {"id": "1", "name": "Laptop", "price": 1200.99, "category": "Electronics", "tags": ["computer"]}
+        {"id": "2", "name": "Desk", "price": 150.0, "category": "Furniture"}
+        """;
+
+    private final ProductService productService = mock(ProductService.class);
+    private final DataInitializer initializer = new DataInitializer(productService, new ObjectMapper());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(initializer, "enabled", true);
+        ReflectionTestUtils.setField(initializer, "seedResource", resource(NDJSON));
+        ReflectionTestUtils.setField(initializer, "maxRetries", 2);
+        ReflectionTestUtils.setField(initializer, "retryBackoff", Duration.ofMillis(1));
+    }
+
+    @Test
+    void shouldStreamJsonArraysAndNdjson() {
+        for (String seed : new String[] {ARRAY, NDJSON}) {
+            StepVerifier.create(initializer.readProducts(resource(seed)))
+                .assertNext(product -> {
+                    assertThat(product.id()).isEqualTo("1");
+                    assertThat(product.tags()).containsExactly("computer");
+                })
+                .assertNext(product -> assertThat(product.name()).isEqualTo("Desk"))
+                .verifyComplete();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRetryAFailedLoadUntilItSucceeds() {
+        AtomicInteger attempts = new AtomicInteger();
+        when(productService.saveProducts(any(Flux.class))).thenAnswer(invocation -> Mono.defer(() ->
+            attempts.incrementAndGet() < 3
+                ? Mono.error(new ConnectException("Connection refused"))
+                : ((Flux<ProductDocument>) invocation.getArgument(0)).count()
+                    .map(count -> new BulkIngestResult(count, 0, 0, 1))));
+
+        initializer.loadSampleData();
+
+        Health health = awaitSettled();
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails()).containsEntry("state", "loaded").containsEntry("indexed", 2L);
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReportAFinalFailureOnceRetriesAreUsedUp() {
+        when(productService.saveProducts(any(Flux.class))).thenReturn(Mono.error(new ConnectException("Connection refused")));
+
+        initializer.loadSampleData();
+
+        Health health = awaitSettled();
+        assertThat(health.getStatus()).isEqualTo(Status.DOWN);
+        assertThat(health.getDetails())
+            .containsEntry("state", "failed")
+            .containsEntry("attempts", 3)
+            .containsEntry("retrying", false);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldNotRetryAnUnreadableSeedFile() {
+        ReflectionTestUtils.setField(initializer, "seedResource", resource("[{\"id\": \"1\", \"name\": "));
+        when(productService.saveProducts(any(Flux.class))).thenAnswer(invocation ->
+            ((Flux<ProductDocument>) invocation.getArgument(0)).then(Mono.just(BulkIngestResult.EMPTY)));
+
+        initializer.loadSampleData();
+
+        Health health = awaitSettled();
+        assertThat(health.getStatus()).isEqualTo(Status.DOWN);
+        assertThat(health.getDetails()).containsEntry("attempts", 1);
+    }
+
+    // Waits until the load either finished or gave up
+    private Health awaitSettled() {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (true) {
+            Health health = initializer.sampleDataHealthIndicator().health();
+            if (!health.getStatus().equals(Status.OUT_OF_SERVICE) || System.nanoTime() > deadline) {
+                return health;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return health;
+            }
+        }
+    }
+
+    private static ByteArrayResource resource(String content) {
+        return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
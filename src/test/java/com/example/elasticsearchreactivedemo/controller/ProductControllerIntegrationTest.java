@@ -1,12 +1,20 @@
 package com.example.elasticsearchreactivedemo.controller;
 
 import com.example.elasticsearchreactivedemo.config.ElasticsearchConfig;
+import com.example.elasticsearchreactivedemo.model.FacetedSearchResult;
 import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.ProductIdsRequest;
+import com.example.elasticsearchreactivedemo.model.ProductPatch;
+import com.example.elasticsearchreactivedemo.model.ReindexResult;
+import com.example.elasticsearchreactivedemo.model.TaskHandle;
+import com.example.elasticsearchreactivedemo.model.TaskProgress;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
@@ -73,10 +81,10 @@ class ProductControllerIntegrationTest {
                 .expectStatus().isCreated()
                 .expectBody(ProductDocument.class)
                 .value(product -> {
-                    assertThat(product.getId()).isNotNull().isNotEmpty();
-                    assertThat(product.getName()).isEqualTo("Test Laptop");
-                    assertThat(product.getPrice()).isEqualTo(1299.99);
-                    createdProductId = product.getId();
+                    assertThat(product.id()).isNotNull().isNotEmpty();
+                    assertThat(product.name()).isEqualTo("Test Laptop");
+                    assertThat(product.price()).isEqualTo(1299.99);
+                    createdProductId = product.id();
                     System.out.println("Created Product ID: " + createdProductId);
                 });
     }
@@ -92,8 +100,8 @@ class ProductControllerIntegrationTest {
                 .expectStatus().isOk()
                 .expectBody(ProductDocument.class)
                 .value(product -> {
-                    assertThat(product.getId()).isEqualTo(createdProductId);
-                    assertThat(product.getName()).isEqualTo("Test Laptop");
+                    assertThat(product.id()).isEqualTo(createdProductId);
+                    assertThat(product.name()).isEqualTo("Test Laptop");
                 });
     }
 
@@ -126,7 +134,7 @@ class ProductControllerIntegrationTest {
                 .expectStatus().isOk()
                 .expectBodyList(ProductDocument.class)
                 .value(products -> {
-                    assertThat(products).extracting(ProductDocument::getName)
+                    assertThat(products).extracting(ProductDocument::name)
                             .containsExactlyInAnyOrder("Test Laptop", "Test Monitor");
                 });
 
@@ -137,7 +145,7 @@ class ProductControllerIntegrationTest {
                 .expectBodyList(ProductDocument.class)
                 .value(products -> {
                     assertThat(products).hasSize(1);
-                    assertThat(products.get(0).getName()).isEqualTo("Test Monitor");
+                    assertThat(products.get(0).name()).isEqualTo("Test Monitor");
                 });
     }
 
@@ -156,10 +164,10 @@ class ProductControllerIntegrationTest {
                 .expectStatus().isOk()
                 .expectBody(ProductDocument.class)
                 .value(product -> {
-                    assertThat(product.getId()).isEqualTo(createdProductId);
-                    assertThat(product.getName()).isEqualTo("Updated Test Laptop");
-                    assertThat(product.getPrice()).isEqualTo(1349.00);
-                    assertThat(product.getTags()).containsExactlyInAnyOrder("computer", "updated");
+                    assertThat(product.id()).isEqualTo(createdProductId);
+                    assertThat(product.name()).isEqualTo("Updated Test Laptop");
+                    assertThat(product.price()).isEqualTo(1349.00);
+                    assertThat(product.tags()).containsExactlyInAnyOrder("computer", "updated");
                 });
 
         webTestClient.get().uri("/api/v1/products/{id}", createdProductId)
@@ -167,7 +175,7 @@ class ProductControllerIntegrationTest {
                 .exchange()
                 .expectStatus().isOk()
                 .expectBody(ProductDocument.class)
-                .value(product -> assertThat(product.getName()).isEqualTo("Updated Test Laptop"));
+                .value(product -> assertThat(product.name()).isEqualTo("Updated Test Laptop"));
     }
 
     @Test
@@ -190,6 +198,199 @@ class ProductControllerIntegrationTest {
                 .exchange()
                 .expectStatus().isNotFound();
     }
-    // write one more test case
+
+    @Test
+    @Order(8)
+    void shouldExportAllProductsAsNdjson() {
+        webTestClient.get().uri("/api/v1/products/_export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(ProductDocument.class)
+                .value(products -> {
+                    assertThat(products).extracting(ProductDocument::name).contains("Test Monitor");
+                    assertThat(products).extracting(ProductDocument::id).doesNotContain(createdProductId);
+                });
+    }
+
+    @Test
+    @Order(9)
+    void shouldGetMultipleProductsById() {
+        ProductDocument keyboard = new ProductDocument(
+                "Test Keyboard", "A clicky test keyboard", 89.00, "Electronics", List.of("input", "test")
+        );
+
+        String keyboardId = webTestClient.post().uri("/api/v1/products")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(keyboard), ProductDocument.class)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(ProductDocument.class)
+                .returnResult().getResponseBody().id();
+
+        webTestClient.post().uri("/api/v1/products/_mget")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new ProductIdsRequest(List.of(keyboardId, "unknown-id-123")))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ProductDocument.class)
+                .value(products -> {
+                    assertThat(products).hasSize(1);
+                    assertThat(products.get(0).id()).isEqualTo(keyboardId);
+                    assertThat(products.get(0).name()).isEqualTo("Test Keyboard");
+                });
+    }
+
+    @Test
+    @Order(10)
+    void shouldFilterAndCountFacets() {
+        webTestClient.get().uri(uri -> uri.path("/api/v1/products/_search")
+                        .queryParam("category", "Electronics")
+                        .queryParam("tag", "test")
+                        .queryParam("maxPrice", 500)
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(FacetedSearchResult.class)
+                .value(result -> {
+                    assertThat(result.products()).extracting(ProductDocument::name)
+                            .containsExactlyInAnyOrder("Test Monitor", "Test Keyboard");
+                    assertThat(result.total()).isEqualTo(2);
+                    assertThat(result.facets().categories()).containsExactly(new FacetedSearchResult.Bucket("Electronics", 2));
+                    assertThat(result.facets().tags()).contains(new FacetedSearchResult.Bucket("test", 2));
+                    assertThat(result.facets().prices()).extracting(FacetedSearchResult.PriceBucket::from)
+                            .containsExactly(0.0, 300.0);
+                });
+    }
+
+    @Test
+    @Order(11)
+    void shouldReindexIntoNewIndexBehindAlias() {
+        webTestClient.post().uri("/api/v1/products/_reindex")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ReindexResult.class)
+                .value(result -> {
+                    assertThat(result.index()).startsWith("products-");
+                    assertThat(result.previousIndices()).isNotEmpty().doesNotContain(result.index());
+                    assertThat(result.loaded().indexed()).isGreaterThanOrEqualTo(2);
+                    assertThat(result.loaded().failed()).isZero();
+                });
+
+        webTestClient.get().uri(uri -> uri.path("/api/v1/products/search").queryParam("query", "Keyboard").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ProductDocument.class)
+                .value(products -> assertThat(products).extracting(ProductDocument::name).contains("Test Keyboard"));
+    }
+
+    @Test
+    @Order(12)
+    void shouldPatchOnlyGivenFieldsAndRejectStaleVersions() {
+        ProductDocument lamp = new ProductDocument("Test Lamp", "A bright test lamp", 40.00, "Home", List.of("light", "test"));
+        String lampId = webTestClient.post().uri("/api/v1/products")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(lamp), ProductDocument.class)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(ProductDocument.class)
+                .returnResult().getResponseBody().id();
+
+        String etag = webTestClient.patch().uri("/api/v1/products/{id}", lampId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new ProductPatch(null, null, null, 35.00, null, null))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectBody(ProductDocument.class)
+                .value(patched -> {
+                    assertThat(patched.price()).isEqualTo(35.00);
+                    assertThat(patched.name()).isEqualTo("Test Lamp");
+                    assertThat(patched.tags()).containsExactly("light", "test");
+                })
+                .returnResult().getResponseHeaders().getETag();
+
+        webTestClient.patch().uri("/api/v1/products/{id}", lampId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, etag)
+                .bodyValue(new ProductPatch(null, null, null, 30.00, null, null))
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.patch().uri("/api/v1/products/{id}", lampId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, etag) // stale by now
+                .bodyValue(new ProductPatch(null, null, null, 25.00, null, null))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        // A GET answers with the current version, good for the next conditional PATCH
+        String current = webTestClient.get().uri("/api/v1/products/{id}", lampId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .returnResult(ProductDocument.class).getResponseHeaders().getETag();
+        assertThat(current).isNotEqualTo(etag);
+
+        webTestClient.patch().uri("/api/v1/products/{id}", lampId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, current)
+                .bodyValue(new ProductPatch(null, null, null, 25.00, null, null))
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.patch().uri("/api/v1/products/{id}", "unknown-id-123")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new ProductPatch(null, null, null, 1.00, null, null))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @Order(13)
+    void shouldRunUpdateAndDeleteByQueryAsTasks() {
+        TaskHandle update = webTestClient.post().uri(uri -> uri.path("/api/v1/products/_update_by_query")
+                        .queryParam("category", "Home")
+                        .build())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new ProductPatch(null, null, null, null, "Clearance", null))
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectHeader().exists(HttpHeaders.LOCATION)
+                .expectBody(TaskHandle.class)
+                .returnResult().getResponseBody();
+
+        assertThat(finalProgress(update).updated()).isGreaterThanOrEqualTo(1);
+
+        TaskHandle delete = webTestClient.post().uri(uri -> uri.path("/api/v1/products/_delete_by_query")
+                        .queryParam("category", "Clearance")
+                        .queryParam("requestsPerSecond", 100)
+                        .build())
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody(TaskHandle.class)
+                .returnResult().getResponseBody();
+
+        TaskProgress deleted = finalProgress(delete);
+        assertThat(deleted.deleted()).isEqualTo(deleted.total()).isGreaterThanOrEqualTo(1);
+        assertThat(deleted.remaining()).isZero();
+    }
+
+    private TaskProgress finalProgress(TaskHandle task) {
+        List<TaskProgress> progress = webTestClient.get().uri("/api/v1/products/_tasks/{taskId}", task.taskId())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(TaskProgress.class)
+                .getResponseBody()
+                .collectList()
+                .block(Duration.ofSeconds(30));
+        assertThat(progress).isNotEmpty();
+        TaskProgress last = progress.get(progress.size() - 1);
+        assertThat(last.completed()).isTrue();
+        return last;
+    }
 
 }
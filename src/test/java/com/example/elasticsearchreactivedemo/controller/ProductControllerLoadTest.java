@@ -0,0 +1,231 @@
+package com.example.elasticsearchreactivedemo.controller;
+
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.ProductIdsRequest;
+import com.example.elasticsearchreactivedemo.model.ProductPatch;
+import com.example.elasticsearchreactivedemo.support.ElasticsearchStubServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Drives every ProductController endpoint over HTTP against an in-process Elasticsearch stub, so latency
+// regressions can be measured without Docker. Reports p50/p99/p999 and throughput per endpoint. Opt-in, e.g.:
+//   mvn test -Dtest=ProductControllerLoadTest -Dloadtest=true -Dloadtest.concurrency=128 -Dloadtest.rate=2000
+// With -Dloadtest.max-p99-ms=<ms> the test fails when any endpoint's p99 exceeds the budget.
+// Requests shed by the concurrency limiter (503) are reported separately and do not count as errors.
+// With -Dloadtest.write-behind=true, saves and deletes go through the write-behind log in a temporary directory.
+// With -Dloadtest.hedge=true, slow gets and searches are hedged.
+// Per-request logging would dominate the measurements; levels set here apply before logging is initialized,
+// unlike a @DynamicPropertySource. The client's keep-alive connections are closed after the run, otherwise the
+// server's graceful shutdown waits for them and the fork is killed by Surefire instead of exiting.
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "logging.level.com.example.elasticsearchreactivedemo=WARN")
+@DirtiesContext
+class ProductControllerLoadTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 64);
+    private static final int RATE = Integer.getInteger("loadtest.rate", 0); // per endpoint; 0 = as fast as possible
+    private static final int REQUESTS = Integer.getInteger("loadtest.requests", 5_000);
+    private static final int CATALOG_SIZE = Integer.getInteger("loadtest.catalog-size", 1_000);
+    private static final Duration LATENCY = Duration.ofMillis(Long.getLong("loadtest.latency-ms", 2));
+    private static final long MAX_P99_MS = Long.getLong("loadtest.max-p99-ms", 0);
+
+    private static final String[] WORDS = {"laptop", "phone", "desk", "lamp", "chair", "monitor", "keyboard", "mouse"};
+
+    private static final ElasticsearchStubServer stub = ElasticsearchStubServer.start(LATENCY);
+
+    // The client's own connections and event loops, released with the stub
+    private static final ConnectionProvider connections = ConnectionProvider.create("load-test", CONCURRENCY);
+    private static final LoopResources loops = LoopResources.create("load-test");
+
+    @LocalServerPort
+    private int port;
+
+    private record Scenario(String name, int requests, IntFunction<Mono<HttpStatusCode>> call) {
+    }
+
+    private record Result(String name, int requests, int errors, int shed, double throughput, long[] sortedLatencies) {
+
+        double percentileMillis(double p) {
+            int index = (int) Math.min(sortedLatencies.length - 1, Math.ceil(p * sortedLatencies.length) - 1);
+            return sortedLatencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+
+    @DynamicPropertySource
+    static void elasticsearchProperties(DynamicPropertyRegistry registry) {
+        registry.add("elasticsearch.uris", stub::uri);
+        registry.add("elasticsearch.seed.enabled", () -> "false");
+        if (Boolean.getBoolean("loadtest.write-behind")) {
+            registry.add("elasticsearch.write.consistency", () -> "overlay");
+            registry.add("elasticsearch.write.behind.enabled", () -> "true");
+            Path directory = writeBehindDirectory();
+            registry.add("elasticsearch.write.behind.path", directory::toString);
+        }
+        if (Boolean.getBoolean("loadtest.hedge")) {
+            registry.add("elasticsearch.hedge.enabled", () -> "true");
+        }
+    }
+
+    private static Path writeBehindDirectory() {
+        try {
+            return Files.createTempDirectory("write-behind");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @AfterAll
+    static void stop() {
+        connections.disposeLater().block(Duration.ofSeconds(10));
+        loops.disposeLater().block(Duration.ofSeconds(10));
+        stub.close();
+    }
+
+    @Test
+    void driveAllEndpoints() {
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            stub.putDocument(catalogId(i), "{\"name\":\"" + name(i) + "\",\"description\":\"Load test product\","
+                + "\"price\":" + (10 + i % 500) + ",\"category\":\"Category " + i % 10 + "\",\"tags\":[\"" + WORDS[i % WORDS.length] + "\"]}");
+        }
+        WebClient client = WebClient.builder()
+            .baseUrl("http://localhost:" + port + "/api/v1/products")
+            .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections).runOn(loops)))
+            .build();
+
+        // Deletes go last so the other scenarios see the full catalog
+        List<Scenario> scenarios = List.of(
+            new Scenario("POST /", REQUESTS, i -> exchange(client.post().uri("")
+                .bodyValue(new ProductDocument(name(i), "Created under load", 9.99, "Load", List.of("load"))))),
+            new Scenario("GET /{id}", REQUESTS, i -> exchange(client.get().uri("/{id}", catalogId(i)))),
+            new Scenario("PUT /{id}", REQUESTS, i -> exchange(client.put().uri("/{id}", catalogId(i))
+                .bodyValue(new ProductDocument(name(i), "Updated under load", 19.99, "Load", List.of("load"))))),
+            new Scenario("PATCH /{id}", REQUESTS, i -> exchange(client.patch().uri("/{id}", catalogId(i))
+                .bodyValue(new ProductPatch(null, null, null, 24.99 + i % 100, null, null)))),
+            new Scenario("POST /_mget", REQUESTS, i -> exchange(client.post().uri("/_mget")
+                .bodyValue(new ProductIdsRequest(IntStream.range(i, i + 10).mapToObj(ProductControllerLoadTest::catalogId).toList())))),
+            new Scenario("GET /search", REQUESTS, i -> exchange(client.get()
+                .uri(b -> b.path("/search").queryParam("query", WORDS[i % WORDS.length] + " " + WORDS[(i / 8) % WORDS.length]).build()))),
+            new Scenario("GET /search raw", REQUESTS, i -> exchange(client.get()
+                .uri(b -> b.path("/search").queryParam("query", WORDS[i % WORDS.length] + " " + WORDS[(i / 8) % WORDS.length])
+                    .queryParam("raw", true).build()))),
+            new Scenario("GET /suggest", REQUESTS, i -> exchange(client.get()
+                .uri(b -> b.path("/suggest").queryParam("prefix", WORDS[i % WORDS.length].substring(0, 1 + i % 4)).build()))),
+            new Scenario("POST /_import", REQUESTS / 10, i -> exchange(client.post().uri("/_import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(IntStream.range(0, 100)
+                    .mapToObj(n -> "{\"name\":\"" + name(i * 100 + n) + "\",\"price\":1.0,\"category\":\"Import\"}")
+                    .collect(Collectors.joining("\n"))))),
+            new Scenario("PATCH / bulk", REQUESTS / 10, i -> exchange(client.patch().uri("")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(IntStream.range(0, 100)
+                    .mapToObj(n -> "{\"id\":\"" + catalogId(i * 100 + n) + "\",\"price\":" + (n + 0.5) + "}")
+                    .collect(Collectors.joining("\n"))))),
+            new Scenario("GET /_export", Math.max(REQUESTS / 100, 10), i -> exchange(client.get().uri("/_export")
+                .accept(MediaType.APPLICATION_NDJSON))),
+            new Scenario("DELETE /{id}", Math.min(REQUESTS, CATALOG_SIZE), i -> exchange(client.delete().uri("/{id}", catalogId(i)))));
+
+        System.out.printf("concurrency=%d rate=%s latency=%s catalog=%d%n",
+            CONCURRENCY, RATE > 0 ? RATE + "/s" : "unbounded", LATENCY, CATALOG_SIZE);
+        System.out.printf("%-16s %8s %7s %7s %10s %9s %9s %9s%n", "endpoint", "requests", "errors", "shed", "req/s", "p50 ms", "p99 ms", "p999 ms");
+        List<Result> results = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            if (!scenario.name().startsWith("DELETE")) {
+                run(new Scenario(scenario.name(), Math.max(scenario.requests() / 10, 1), scenario.call())); // warm-up
+            }
+            Result result = run(scenario);
+            results.add(result);
+            System.out.printf("%-16s %8d %7d %7d %10.0f %9.2f %9.2f %9.2f%n", result.name(), result.requests(), result.errors(),
+                result.shed(), result.throughput(), result.percentileMillis(0.50), result.percentileMillis(0.99), result.percentileMillis(0.999));
+        }
+
+        assertThat(results).allSatisfy(result -> {
+            assertThat(result.errors()).as("errors for %s", result.name()).isZero();
+            if (MAX_P99_MS > 0) {
+                assertThat(result.percentileMillis(0.99)).as("p99 of %s", result.name()).isLessThanOrEqualTo(MAX_P99_MS);
+            }
+        });
+    }
+
+    private Result run(Scenario scenario) {
+        int requests = scenario.requests();
+        long[] latencies = new long[requests];
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger shed = new AtomicInteger();
+        long periodNanos = RATE > 0 ? 1_000_000_000L / RATE : 0;
+        Flux<Integer> ticks = periodNanos > 0
+            ? Flux.interval(Duration.ofNanos(periodNanos)).onBackpressureBuffer().take(requests).map(Long::intValue)
+            : Flux.range(0, requests);
+
+        long start = System.nanoTime();
+        ticks.flatMap(i -> {
+                // At a fixed rate, measure from the scheduled send time so queueing delay is not hidden
+                long begin = periodNanos > 0 ? start + i * periodNanos : System.nanoTime();
+                return scenario.call().apply(i)
+                    .doOnNext(status -> {
+                        if (status.value() == 503) {
+                            shed.incrementAndGet();
+                        } else if (!status.is2xxSuccessful()) {
+                            errors.incrementAndGet();
+                        }
+                    })
+                    .onErrorResume(e -> {
+                        errors.incrementAndGet();
+                        return Mono.empty();
+                    })
+                    .doFinally(signal -> latencies[i] = System.nanoTime() - begin);
+            }, CONCURRENCY)
+            .blockLast();
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        return new Result(scenario.name(), requests, errors.get(), shed.get(), requests / (elapsed / 1e9), latencies);
+    }
+
+    // Read the whole body, streamed or not, so latency covers the complete response
+    private static Mono<HttpStatusCode> exchange(WebClient.RequestHeadersSpec<?> request) {
+        return request.exchangeToMono(response -> response.bodyToFlux(DataBuffer.class)
+            .doOnNext(DataBufferUtils::release)
+            .then(Mono.just(response.statusCode())));
+    }
+
+    private static String catalogId(int i) {
+        return "load-" + i % CATALOG_SIZE;
+    }
+
+    private static String name(int i) {
+        return WORDS[i % WORDS.length] + " " + i;
+    }
+}
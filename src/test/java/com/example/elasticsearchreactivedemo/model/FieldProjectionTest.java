@@ -0,0 +1,53 @@
+package com.example.elasticsearchreactivedemo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FieldProjectionTest {
+
+    private final ProductDocument product = product();
+
+    @Test
+    void shouldKeepOnlyIncludedFieldsWithIdFirst() {
+        FieldProjection projection = FieldProjection.parse("price, name");
+
+        assertThat(projection.includes()).containsExactly("price", "name");
+        assertThat(projection.fetchSource()).isTrue();
+        assertThat(projection.apply(product)).containsExactly(
+            Map.entry("id", "p-1"), Map.entry("name", "Laptop"), Map.entry("price", 999.0));
+    }
+
+    @Test
+    void shouldDropExcludedFields() {
+        FieldProjection projection = FieldProjection.parse("-description,-tags");
+
+        assertThat(projection.apply(product)).containsOnlyKeys("id", "name", "price", "category");
+        assertThat(projection.apply("p-2", Map.of("name", "Phone", "description", "Smart", "other", 1)))
+            .containsOnlyKeys("id", "name");
+    }
+
+    @Test
+    void shouldSkipSourceWhenOnlyIdIsRequested() {
+        FieldProjection projection = FieldProjection.parse("id");
+
+        assertThat(projection.fetchSource()).isFalse();
+        assertThat(projection.apply(product)).containsExactly(Map.entry("id", "p-1"));
+        assertThat(FieldProjection.parse("id,name").fetchSource()).isTrue();
+    }
+
+    @Test
+    void shouldRejectUnknownFields() {
+        assertThatThrownBy(() -> FieldProjection.parse("name,colour"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("colour");
+    }
+
+    private static ProductDocument product() {
+        return new ProductDocument("p-1", "Laptop", "Fast", 999.0, "Electronics", List.of("computer"));
+    }
+}
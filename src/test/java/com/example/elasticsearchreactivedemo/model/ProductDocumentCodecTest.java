@@ -0,0 +1,58 @@
+package com.example.elasticsearchreactivedemo.model;
+
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductDocumentCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void shouldRoundTripAndSkipUnknownFields() throws Exception {
+        ProductDocument product = new ProductDocument("p-1", "Laptop", "Fast", 999.5, "Electronics", List.of("computer", "sale"));
+
+        String json = objectMapper.writeValueAsString(product);
+        ProductDocument read = objectMapper.readValue(
+            json.replace("\"name\"", "\"rating\":{\"stars\":[4,5]},\"name\""), ProductDocument.class);
+
+        assertThat(json).isEqualTo("{\"id\":\"p-1\",\"name\":\"Laptop\",\"description\":\"Fast\",\"price\":999.5,"
+            + "\"category\":\"Electronics\",\"tags\":[\"computer\",\"sale\"]}");
+        assertThat(read).isEqualTo(product);
+    }
+
+    @Test
+    void shouldLeaveOutNullsOnlyWhereTheMapperDoes() throws Exception {
+        ProductDocument product = new ProductDocument("Lamp", null, 40.0, null, null);
+
+        assertThat(objectMapper.writeValueAsString(product))
+            .isEqualTo("{\"id\":null,\"name\":\"Lamp\",\"description\":null,\"price\":40.0,\"category\":null,\"tags\":null}");
+        // The Elasticsearch client's mapper, used for index requests
+        assertThat(new JacksonJsonpMapper().objectMapper().writeValueAsString(product))
+            .isEqualTo("{\"name\":\"Lamp\",\"price\":40.0}");
+    }
+
+    @Test
+    void shouldShareCategoryAndTagStringsAcrossDocuments() throws Exception {
+        String json = "{\"name\":\"%s\",\"category\":\"Home\",\"tags\":[\"light\",null,\"test\"]}";
+
+        ProductDocument first = objectMapper.readValue(json.formatted("Lamp"), ProductDocument.class);
+        ProductDocument second = objectMapper.readValue(json.formatted("Desk"), ProductDocument.class);
+
+        assertThat(first.tags()).containsExactly("light", "test");
+        assertThat(second.category()).isSameAs(first.category());
+        assertThat(second.tags().get(1)).isSameAs(first.tags().get(1));
+        assertThat(second.name()).isNotSameAs(first.name());
+    }
+
+    @Test
+    void shouldRejectNonObjects() {
+        assertThatThrownBy(() -> objectMapper.readValue("[1]", ProductDocument.class))
+            .isInstanceOf(com.fasterxml.jackson.core.JsonProcessingException.class);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.GetRequest;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.support.ElasticsearchStubServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+// Compares throughput and tail latency of the blocking and async client modes against a stub node with
+// injected latency. Opt-in, e.g.:
+//   mvn test -Dtest=ElasticsearchExecutorBenchmark -Dbenchmark=true -Dbenchmark.concurrency=1024
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ElasticsearchExecutorBenchmark {
+
+    private static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 512);
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 50_000);
+    private static final Duration LATENCY = Duration.ofMillis(Long.getLong("benchmark.latency-ms", 5));
+
+    @Test
+    void compareClientModes() throws Exception {
+        try (ElasticsearchStubServer stub = ElasticsearchStubServer.start(LATENCY)) {
+            stub.putDocument("1", "{\"id\":\"1\",\"name\":\"Laptop\",\"price\":1200.99,\"category\":\"Electronics\",\"tags\":[\"computer\"]}");
+            System.out.printf("concurrency=%d requests=%d latency=%s%n", CONCURRENCY, REQUESTS, LATENCY);
+            for (ElasticsearchExecutor.Mode mode : ElasticsearchExecutor.Mode.values()) {
+                run(stub, mode, REQUESTS / 10); // warm-up
+                run(stub, mode, REQUESTS);
+            }
+        }
+    }
+
+    private void run(ElasticsearchStubServer stub, ElasticsearchExecutor.Mode mode, int requests) throws Exception {
+        // Size the pool to the concurrency so neither mode is limited by connections
+        RestClient restClient = RestClient.builder(HttpHost.create(stub.uri()))
+            .setHttpClientConfigCallback(b -> b.setMaxConnPerRoute(CONCURRENCY).setMaxConnTotal(CONCURRENCY))
+            .build();
+        try (RestClientTransport transport = new RestClientTransport(restClient, new JacksonJsonpMapper())) {
+            ElasticsearchExecutor executor = new ElasticsearchExecutor(
+                new ElasticsearchClient(transport), new ElasticsearchAsyncClient(transport), restClient, mode, new SimpleMeterRegistry());
+            GetRequest request = GetRequest.of(g -> g.index("products").id("1"));
+            long[] latencies = new long[requests];
+
+            long start = System.nanoTime();
+            Flux.range(0, requests)
+                .flatMap(i -> Mono.defer(() -> {
+                    long begin = System.nanoTime();
+                    return executor.execute("get",
+                            c -> c.get(request, ProductDocument.class),
+                            c -> c.get(request, ProductDocument.class))
+                        .doOnNext(r -> latencies[i] = System.nanoTime() - begin);
+                }), CONCURRENCY)
+                .blockLast();
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            System.out.printf("%-8s %6d req  %10.0f req/s  p50=%6.2f ms  p99=%7.2f ms%n", mode, requests,
+                requests / (elapsed / 1e9), latencies[requests / 2] / 1e6, latencies[(int) (requests * 0.99)] / 1e6);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ElasticsearchLimiterTest {
+
+    private static final long FAST = 1_000_000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ElasticsearchLimiter limiter =
+        new ElasticsearchLimiter(true, 4, 8, 2, 4, 1, 0.5, 2.0, Duration.ofSeconds(2), meterRegistry);
+
+    @Test
+    void shouldRejectBeyondTheLimitWithSeparateBudgets() {
+        List<ElasticsearchLimiter.Permit> reads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            reads.add(limiter.acquire("search"));
+        }
+
+        assertThatThrownBy(() -> limiter.acquire("get"))
+            .isInstanceOfSatisfying(ElasticsearchOverloadedException.class,
+                e -> assertThat(e.retryAfter()).isEqualTo(Duration.ofSeconds(2)));
+        // Writes and unlimited operations are unaffected by the exhausted read budget
+        limiter.acquire("index").release(FAST, null);
+        limiter.acquire("refresh").release(FAST, null);
+        assertThat(meterRegistry.get("elasticsearch.client.rejected").tag("budget", "read").counter().count()).isEqualTo(1);
+
+        reads.get(0).cancel();
+        limiter.acquire("get").release(FAST, null);
+    }
+
+    @Test
+    void shouldGrowWhileSaturatedAndShrinkOnRejections() {
+        for (int round = 0; round < 20; round++) {
+            saturate("search", FAST);
+        }
+        assertThat(limiter.limit(ElasticsearchLimiter.Budget.READ)).isEqualTo(8);
+        assertThat(meterRegistry.get("elasticsearch.client.limit").tag("budget", "read").gauge().value()).isEqualTo(8);
+
+        ElasticsearchException rejected = new ElasticsearchException("search",
+            ErrorResponse.of(r -> r.status(429).error(e -> e.type("es_rejected_execution_exception").reason("queue full"))));
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire("search").release(FAST, rejected);
+        }
+
+        // Halved once per limit's worth of requests: after the first rejection and after four more
+        assertThat(limiter.limit(ElasticsearchLimiter.Budget.READ)).isEqualTo(2);
+    }
+
+    @Test
+    void shouldShrinkWhenLatencyRisesAboveItsLongTermLevel() {
+        for (int round = 0; round < 5; round++) {
+            saturate("get", FAST);
+        }
+        int before = limiter.limit(ElasticsearchLimiter.Budget.READ);
+
+        for (int round = 0; round < 5; round++) {
+            saturate("get", FAST * 20);
+        }
+
+        assertThat(limiter.limit(ElasticsearchLimiter.Budget.READ)).isLessThan(before);
+        // Search latency is tracked separately, so slow gets do not make a normal search look fast
+        limiter.acquire("search").release(FAST * 100, null);
+    }
+
+    @Test
+    void shouldHandReleasedPermitsToWaitingWorkInOrder() {
+        List<ElasticsearchLimiter.Permit> writes = new ArrayList<>();
+        writes.add(limiter.acquire("bulk"));
+        writes.add(limiter.acquire("bulk"));
+
+        AtomicReference<ElasticsearchLimiter.Permit> first = new AtomicReference<>();
+        AtomicReference<ElasticsearchLimiter.Permit> cancelled = new AtomicReference<>();
+        AtomicReference<ElasticsearchLimiter.Permit> second = new AtomicReference<>();
+        limiter.await("bulk").subscribe(first::set);
+        Disposable gaveUp = limiter.await("bulk").subscribe(cancelled::set);
+        limiter.await("delete").subscribe(second::set);
+        assertThat(first.get()).isNull();
+        assertThat(meterRegistry.get("elasticsearch.client.waiting").tag("budget", "write").gauge().value()).isEqualTo(3);
+        // Waiting work is not shed, and the request edge still is
+        assertThatThrownBy(() -> limiter.acquire("index")).isInstanceOf(ElasticsearchOverloadedException.class);
+
+        gaveUp.dispose();
+        writes.get(0).release(FAST, null);
+        assertThat(first.get()).isNotNull();
+        assertThat(second.get()).isNull();
+
+        writes.get(1).cancel();
+        assertThat(cancelled.get()).isNull();
+        assertThat(second.get()).isNotNull();
+        assertThat(meterRegistry.get("elasticsearch.client.waiting").tag("budget", "write").gauge().value()).isZero();
+
+        // Permits return their slot once, however often they are released
+        first.get().release(FAST, null);
+        first.get().cancel();
+        second.get().release(FAST, null);
+        assertThat(meterRegistry.get("elasticsearch.client.in.flight").tag("budget", "write").gauge().value()).isZero();
+    }
+
+    // Takes every permit of the budget, then returns them with the given latency
+    private void saturate(String operation, long latencyNanos) {
+        List<ElasticsearchLimiter.Permit> permits = new ArrayList<>();
+        int limit = limiter.limit(ElasticsearchLimiter.budgetOf(operation));
+        for (int i = 0; i < limit; i++) {
+            permits.add(limiter.acquire(operation));
+        }
+        permits.forEach(permit -> permit.release(latencyNanos, null));
+    }
+}
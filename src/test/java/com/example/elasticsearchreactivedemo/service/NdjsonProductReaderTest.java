@@ -0,0 +1,61 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NdjsonProductReaderTest {
+
+    private final NdjsonProductReader reader = new NdjsonProductReader(new ObjectMapper(), DataSize.ofBytes(64));
+
+    @Test
+    void shouldParseLinesSplitAcrossBuffers() {
+        Flux<DataBuffer> body = Flux.just(
+                "{\"name\":\"Lap", "top\",\"price\":1.5}\n{\"na", "me\":\"Phone\"}\n\n{\"name\":\"Mouse\"}")
+            .map(NdjsonProductReaderTest::buffer);
+
+        StepVerifier.create(reader.read(body))
+            .assertNext(line -> {
+                assertThat(line.number()).isEqualTo(1);
+                assertThat(line.product().name()).isEqualTo("Laptop");
+                assertThat(line.product().price()).isEqualTo(1.5);
+            })
+            .assertNext(line -> assertThat(line.product().name()).isEqualTo("Phone"))
+            .assertNext(line -> {
+                assertThat(line.number()).isEqualTo(4); // blank line 3 is skipped but counted
+                assertThat(line.product().name()).isEqualTo("Mouse");
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldReportMalformedAndOversizedLinesAndContinue() {
+        String oversized = "{\"name\":\"" + "x".repeat(100) + "\"}";
+        Flux<DataBuffer> body = Flux.just("{\"name\":\n", oversized + "\n", "{\"name\":\"Desk\"}\n")
+            .map(NdjsonProductReaderTest::buffer);
+
+        StepVerifier.create(reader.read(body))
+            .assertNext(line -> assertThat(line.isError()).isTrue())
+            .assertNext(line -> {
+                assertThat(line.number()).isEqualTo(2);
+                assertThat(line.error()).contains("exceeds");
+            })
+            .assertNext(line -> {
+                assertThat(line.number()).isEqualTo(3);
+                assertThat(line.product().name()).isEqualTo("Desk");
+            })
+            .verifyComplete();
+    }
+
+    private static DataBuffer buffer(String text) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import co.elastic.clients.json.JsonData;
+import com.example.elasticsearchreactivedemo.model.BulkIngestResult;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.ProductPatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ProductBulkIngesterTest {
+
+    private final ElasticsearchClient esClient = mock(ElasticsearchClient.class);
+    private final ProductBulkIngester ingester = new ProductBulkIngester(
+        new ElasticsearchExecutor(esClient, mock(ElasticsearchAsyncClient.class), mock(RestClient.class), ElasticsearchExecutor.Mode.BLOCKING,
+            new SimpleMeterRegistry()),
+        new ObjectMapper());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(ingester, "indexName", "test-products");
+        ReflectionTestUtils.setField(ingester, "maxActions", 2);
+        ReflectionTestUtils.setField(ingester, "maxBytes", DataSize.ofMegabytes(5));
+        ReflectionTestUtils.setField(ingester, "flushInterval", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(ingester, "maxInFlight", 2);
+        ReflectionTestUtils.setField(ingester, "maxRetries", 2);
+        ReflectionTestUtils.setField(ingester, "retryBackoff", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(ingester, "retryOnConflict", 3);
+    }
+
+    @Test
+    void shouldRetryRejectedItemsAndSummarize() throws Exception {
+        when(esClient.bulk(any(BulkRequest.class)))
+            .thenReturn(response(item("1", 201), item("2", 429)))
+            .thenReturn(response(item("2", 201)));
+
+        StepVerifier.create(ingester.ingest(Flux.just(product("1"), product("2")))
+                .reduce(BulkIngestResult.EMPTY, (total, batch) -> batch.addTo(total)))
+            .assertNext(result -> {
+                assertThat(result.indexed()).isEqualTo(2);
+                assertThat(result.retried()).isEqualTo(1);
+                assertThat(result.failed()).isZero();
+            })
+            .verifyComplete();
+
+        verify(esClient, times(2)).bulk(any(BulkRequest.class));
+    }
+
+    @Test
+    void shouldNotRetryPermanentFailures() throws Exception {
+        when(esClient.bulk(any(BulkRequest.class)))
+            .thenReturn(response(item("1", 201), item("2", 400)));
+
+        StepVerifier.create(ingester.ingest(Flux.just(product("1"), product("2"))))
+            .assertNext(batch -> {
+                assertThat(batch.indexed()).extracting(ProductDocument::id).containsExactly("1");
+                assertThat(batch.failures()).extracting(BulkBatchResult.Failure::id).containsExactly("2");
+                assertThat(batch.retried()).isZero();
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldSplitBatchesByMaxActions() throws Exception {
+        when(esClient.bulk(any(BulkRequest.class)))
+            .thenAnswer(invocation -> {
+                BulkRequest request = invocation.getArgument(0);
+                return response(request.operations().stream()
+                    .map(op -> item(op.index().id(), 201))
+                    .toArray(BulkResponseItem[]::new));
+            });
+
+        StepVerifier.create(ingester.ingest(Flux.just(product("1"), product("2"), product("3"))).count())
+            .expectNext(2L)
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldSendPartialUpdatesAndReturnMergedDocuments() throws Exception {
+        when(esClient.bulk(any(BulkRequest.class)))
+            .thenAnswer(invocation -> {
+                BulkRequest request = invocation.getArgument(0);
+                assertThat(request.operations()).allSatisfy(op -> {
+                    assertThat(op.isUpdate()).isTrue();
+                    assertThat(op.update().retryOnConflict()).isEqualTo(3);
+                });
+                return response(updated("1", "Laptop", 899.0), item("2", 404));
+            });
+
+        StepVerifier.create(ingester.update(Flux.just(patch("1", 899.0), patch("2", 5.0))))
+            .assertNext(batch -> {
+                assertThat(batch.indexed()).singleElement().satisfies(product -> {
+                    assertThat(product.id()).isEqualTo("1");
+                    assertThat(product.name()).isEqualTo("Laptop");
+                    assertThat(product.price()).isEqualTo(899.0);
+                });
+                assertThat(batch.failures()).extracting(BulkBatchResult.Failure::status).containsExactly(404);
+            })
+            .verifyComplete();
+    }
+
+    private static ProductPatch patch(String id, double price) {
+        return new ProductPatch(id, null, null, price, null, null);
+    }
+
+    private static BulkResponseItem updated(String id, String name, double price) {
+        return BulkResponseItem.of(i -> i.operationType(OperationType.Update).index("test-products").id(id).status(200)
+            .get(g -> g.found(true).seqNo(7L).primaryTerm(1L)
+                .source(Map.of("name", JsonData.of(name), "price", JsonData.of(price)))));
+    }
+
+    private static ProductDocument product(String id) {
+        return new ProductDocument(id, "Product " + id, "desc", 10.0, "Electronics", List.of("tag"));
+    }
+
+    private static BulkResponse response(BulkResponseItem... items) {
+        return BulkResponse.of(b -> b.took(1).errors(false).items(List.of(items)));
+    }
+
+    private static BulkResponseItem item(String id, int status) {
+        return BulkResponseItem.of(i -> {
+            i.operationType(OperationType.Index).index("test-products").id(id).status(status);
+            if (status >= 300) {
+                i.error(e -> e.type("error").reason("status " + status));
+            }
+            return i;
+        });
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import com.example.elasticsearchreactivedemo.model.DocumentVersion;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.VersionedProduct;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, Mono<VersionedProduct>> loader = id -> Mono.fromSupplier(() -> {
+        loads.incrementAndGet();
+        return id.startsWith("missing") ? null : product(id, "Loaded", 1);
+    });
+
+    @Test
+    void shouldLoadOnceAndNeverPinMisses() {
+        ProductCache cache = cache(100, Duration.ofMinutes(1));
+
+        StepVerifier.create(cache.get("1", loader)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(cache.get("1", loader)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(cache.get("missing", loader)).verifyComplete();
+        StepVerifier.create(cache.get("missing", loader)).verifyComplete();
+
+        assertThat(loads).hasValue(3);
+        StepVerifier.create(cache.getIfPresent("missing")).verifyComplete();
+    }
+
+    @Test
+    void shouldServeWrittenDocumentsAndReloadInvalidatedOnes() {
+        ProductCache cache = cache(100, Duration.ofMinutes(1));
+        cache.get("1", loader).block();
+        cache.put(product("1", "Written", 2));
+
+        StepVerifier.create(cache.get("1", loader))
+            .assertNext(cached -> {
+                assertThat(cached.product().name()).isEqualTo("Written");
+                assertThat(cached.version()).isEqualTo(new DocumentVersion(2, 1));
+            })
+            .verifyComplete();
+
+        cache.invalidate("1");
+        StepVerifier.create(cache.getIfPresent("1")).verifyComplete();
+        StepVerifier.create(cache.get("1", loader).map(cached -> cached.product().name())).expectNext("Loaded").verifyComplete();
+        cache.invalidateAll();
+        StepVerifier.create(cache.getIfPresent("1")).verifyComplete();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void shouldExpireEntriesAfterTheTtl() throws InterruptedException {
+        ProductCache cache = cache(100, Duration.ofMillis(50));
+        cache.get("1", loader).block();
+
+        Thread.sleep(100);
+
+        StepVerifier.create(cache.getIfPresent("1")).verifyComplete();
+        cache.get("1", loader).block();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void shouldStayWithinTheMaximumSize() {
+        ProductCache cache = cache(10, Duration.ofMinutes(1));
+        for (int i = 0; i < 100; i++) {
+            cache.put(product(String.valueOf(i), "Product " + i, i));
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    void shouldLoadEveryTimeWhenDisabled() {
+        ProductCache cache = new ProductCache(false, 100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        cache.put(product("1", "Written", 2));
+
+        StepVerifier.create(cache.get("1", loader).map(cached -> cached.product().name())).expectNext("Loaded").verifyComplete();
+        StepVerifier.create(cache.getIfPresent("1")).verifyComplete();
+    }
+
+    private static ProductCache cache(long maximumSize, Duration ttl) {
+        return new ProductCache(true, maximumSize, ttl, new SimpleMeterRegistry());
+    }
+
+    private static VersionedProduct product(String id, String name, long seqNo) {
+        return new VersionedProduct(new ProductDocument(id, name, null, 1.0, "Test", List.of()), new DocumentVersion(seqNo, 1));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.example.elasticsearchreactivedemo.support.ElasticsearchStubServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductIndexManagerTest {
+
+    private final ElasticsearchStubServer stub = ElasticsearchStubServer.start(Duration.ZERO);
+    private final RestClient restClient = RestClient.builder(HttpHost.create(stub.uri())).build();
+    private final RestClientTransport transport = new RestClientTransport(restClient, new JacksonJsonpMapper());
+    private final ElasticsearchExecutor esExecutor = new ElasticsearchExecutor(new ElasticsearchClient(transport),
+        new ElasticsearchAsyncClient(transport), restClient, ElasticsearchExecutor.Mode.ASYNC, new SimpleMeterRegistry());
+    private final ProductIndexManager indexManager = new ProductIndexManager(esExecutor,
+        new ProductTasks(esExecutor, new ObjectMapper()), new ObjectMapper(), new ClassPathResource("elasticsearch/product-mappings.json"));
+
+    ProductIndexManagerTest() {
+        ReflectionTestUtils.setField(indexManager, "indexName", "products");
+        ReflectionTestUtils.setField(indexManager, "shards", 1);
+        ReflectionTestUtils.setField(indexManager, "replicas", 0);
+        ReflectionTestUtils.setField(indexManager, "refreshInterval", "1s");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        transport.close();
+        stub.close();
+    }
+
+    @Test
+    void shouldInstallTemplateOnceAndCreateIndexWithItsMappings() {
+        assertThat(indexManager.putTemplate().block()).isTrue();
+        assertThat(indexManager.putTemplate().block()).as("same version already installed").isFalse();
+
+        assertThat(indexManager.createIndexIfMissing().block()).isTrue();
+        assertThat(indexManager.createIndexIfMissing().block()).isFalse();
+        assertThat(indexManager.mappingDrift().block()).isEmpty();
+    }
+
+    @Test
+    void shouldReportDriftOfIndexCreatedWithoutTemplate() throws Exception {
+        restClient.performRequest(new Request("PUT", "/products"));
+
+        assertThat(indexManager.putTemplate().block()).isTrue();
+        assertThat(indexManager.createIndexIfMissing().block()).isFalse();
+        assertThat(indexManager.mappingDrift().block())
+            .containsExactly("dynamic is unset, expected false", "properties is missing");
+    }
+}
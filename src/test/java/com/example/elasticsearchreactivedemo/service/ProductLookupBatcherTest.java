@@ -0,0 +1,137 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.MgetRequest;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import com.example.elasticsearchreactivedemo.model.DocumentVersion;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.VersionedProduct;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ProductLookupBatcherTest {
+
+    private final ElasticsearchClient esClient = mock(ElasticsearchClient.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldResolveLookupsWithinTheWindowWithOneMget() throws Exception {
+        when(esClient.mget(any(MgetRequest.class), eq(ProductDocument.class)))
+            .thenAnswer(invocation -> response(invocation.getArgument(0)));
+        ProductLookupBatcher batcher = batcher(Duration.ofMillis(50), 100);
+
+        StepVerifier.create(Flux.merge(batcher.get("1"), batcher.get("missing"), batcher.get("2"), batcher.get("1")).collectList())
+            .assertNext(found -> {
+                // The missing ID completes empty; the duplicate ID is fetched once but answers both lookups
+                assertThat(found).extracting(v -> v.product().id()).containsExactlyInAnyOrder("1", "1", "2");
+                assertThat(found).extracting(VersionedProduct::version).containsOnly(new DocumentVersion(7, 1));
+            })
+            .verifyComplete();
+
+        ArgumentCaptor<MgetRequest> request = ArgumentCaptor.forClass(MgetRequest.class);
+        verify(esClient, times(1)).mget(request.capture(), eq(ProductDocument.class));
+        assertThat(request.getValue().ids()).containsExactly("1", "missing", "2");
+    }
+
+    @Test
+    void shouldSendAFullBatchWithoutWaitingForTheWindow() throws Exception {
+        when(esClient.mget(any(MgetRequest.class), eq(ProductDocument.class)))
+            .thenAnswer(invocation -> response(invocation.getArgument(0)));
+        ProductLookupBatcher batcher = batcher(Duration.ofHours(1), 2);
+
+        StepVerifier.create(Flux.merge(batcher.get("1"), batcher.get("2")).collectList())
+            .assertNext(found -> assertThat(found).hasSize(2))
+            .expectComplete()
+            .verify(Duration.ofSeconds(5));
+        verify(esClient, times(1)).mget(any(MgetRequest.class), eq(ProductDocument.class));
+    }
+
+    @Test
+    void shouldFailEveryLookupOfAFailedBatch() throws Exception {
+        when(esClient.mget(any(MgetRequest.class), eq(ProductDocument.class))).thenThrow(new IOException("connection reset"));
+        ProductLookupBatcher batcher = batcher(Duration.ofMillis(10), 100);
+
+        StepVerifier.create(Flux.merge(batcher.get("1").onErrorResume(e -> Mono.just(failed(e))),
+                batcher.get("2").onErrorResume(e -> Mono.just(failed(e)))))
+            .expectNextCount(2)
+            .verifyComplete();
+        verify(esClient, times(1)).mget(any(MgetRequest.class), eq(ProductDocument.class));
+    }
+
+    @Test
+    void shouldDropCancelledLookupsFromTheBatch() throws Exception {
+        when(esClient.mget(any(MgetRequest.class), eq(ProductDocument.class)))
+            .thenAnswer(invocation -> response(invocation.getArgument(0)));
+        ProductLookupBatcher batcher = batcher(Duration.ofMillis(50), 100);
+
+        Disposable cancelled = batcher.get("1").subscribe();
+        cancelled.dispose();
+        StepVerifier.create(batcher.get("2"))
+            .assertNext(found -> assertThat(found.product().id()).isEqualTo("2"))
+            .verifyComplete();
+
+        ArgumentCaptor<MgetRequest> request = ArgumentCaptor.forClass(MgetRequest.class);
+        verify(esClient, times(1)).mget(request.capture(), eq(ProductDocument.class));
+        assertThat(request.getValue().ids()).containsExactly("2");
+    }
+
+    @Test
+    void shouldGiveEachBatchItsOwnWindow() throws Exception {
+        when(esClient.mget(any(MgetRequest.class), eq(ProductDocument.class)))
+            .thenAnswer(invocation -> response(invocation.getArgument(0)));
+        ProductLookupBatcher batcher = batcher(Duration.ofSeconds(1), 100);
+
+        batcher.get("1").subscribe().dispose(); // opens a window, then leaves the batch empty
+        Thread.sleep(500);
+        Mono<VersionedProduct> second = batcher.get("2").cache();
+        second.subscribe();
+        Thread.sleep(700); // past the first window, but not the second one
+
+        verify(esClient, never()).mget(any(MgetRequest.class), eq(ProductDocument.class));
+        StepVerifier.create(second).expectNextCount(1).expectComplete().verify(Duration.ofSeconds(5));
+    }
+
+    private ProductLookupBatcher batcher(Duration window, int maxBatchSize) {
+        ElasticsearchExecutor executor = new ElasticsearchExecutor(esClient, mock(ElasticsearchAsyncClient.class),
+            mock(RestClient.class), ElasticsearchExecutor.Mode.BLOCKING, meterRegistry);
+        ProductLookupBatcher batcher = new ProductLookupBatcher(executor,
+            new ReadHedger(false, 0.95, 0.05, Duration.ofMillis(2), meterRegistry), true, window, maxBatchSize);
+        ReflectionTestUtils.setField(batcher, "indexName", "test-products");
+        return batcher;
+    }
+
+    private static VersionedProduct failed(Throwable error) {
+        assertThat(error).hasMessage("connection reset");
+        return new VersionedProduct(null, null);
+    }
+
+    // Every requested ID is found except "missing"
+    private static MgetResponse<ProductDocument> response(MgetRequest request) {
+        List<MultiGetResponseItem<ProductDocument>> docs = request.ids().stream()
+            .map(id -> MultiGetResponseItem.<ProductDocument>of(item -> item.result(result -> {
+                result.index("test-products").id(id).found(!id.equals("missing"));
+                return id.equals("missing") ? result
+                    : result.seqNo(7L).primaryTerm(1L).source(new ProductDocument("Product " + id, null, 1.0, "Test", List.of()));
+            })))
+            .toList();
+        return MgetResponse.of(m -> m.docs(docs));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.example.elasticsearchreactivedemo.model.Suggestion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductSuggesterTest {
+
+    private final ProductScanner productScanner = mock(ProductScanner.class);
+    private final ProductSuggester suggester = new ProductSuggester(productScanner, true, 1000, new SimpleMeterRegistry());
+
+    @Test
+    void shouldSuggestNamesByAnyWordAndRankTagsByPopularity() {
+        suggester.add(product("1", "Coffee Maker", "kitchen", "coffee"));
+        suggester.add(product("2", "Cold Brew Coffee", "coffee"));
+        suggester.add(product("3", "Laptop", "computer"));
+
+        assertThat(suggester.suggest("co", 10)).containsExactly(
+            new Suggestion("coffee", Suggestion.Type.tag, 2),
+            new Suggestion("computer", Suggestion.Type.tag, 1),
+            new Suggestion("Coffee Maker", Suggestion.Type.name, 1),
+            new Suggestion("Cold Brew Coffee", Suggestion.Type.name, 1));
+        assertThat(suggester.suggest("MAK", 10)).extracting(Suggestion::text).containsExactly("Coffee Maker");
+        assertThat(suggester.suggest("co", 1)).hasSize(1);
+        assertThat(suggester.suggest(" ", 10)).isEmpty();
+    }
+
+    @Test
+    void shouldReplaceAndRemoveWhatAProductContributed() {
+        suggester.add(product("1", "Coffee Maker", "coffee"));
+        suggester.add(product("2", "Espresso Machine", "coffee"));
+
+        suggester.add(product("1", "Tea Kettle", "tea"));
+        assertThat(suggester.suggest("coffee", 10)).containsExactly(new Suggestion("coffee", Suggestion.Type.tag, 1));
+        assertThat(suggester.suggest("tea", 10)).extracting(Suggestion::text).containsExactly("tea", "Tea Kettle");
+
+        suggester.remove("2");
+        assertThat(suggester.suggest("coffee", 10)).isEmpty();
+        assertThat(suggester.suggest("esp", 10)).isEmpty();
+
+        suggester.clear();
+        assertThat(suggester.suggest("tea", 10)).isEmpty();
+    }
+
+    @Test
+    void shouldKeepServingAndNotResurrectRemovedProductsWhileRebuilding() {
+        Sinks.Many<ProductDocument> scan = Sinks.many().unicast().onBackpressureBuffer();
+        when(productScanner.scan()).thenReturn(scan.asFlux());
+        suggester.add(product("1", "Coffee Maker", "coffee"));
+
+        suggester.rebuild();
+        scan.tryEmitNext(product("2", "Espresso Machine", "coffee"));
+        assertThat(suggester.suggest("coffee", 10)).extracting(Suggestion::text).containsExactly("coffee", "Coffee Maker");
+
+        // Written while the scan still reads the snapshot from before them
+        suggester.remove("1");
+        suggester.add(product("3", "Tea Kettle", "tea"));
+        scan.tryEmitNext(product("1", "Coffee Maker", "coffee"));
+        scan.tryEmitNext(product("3", "Kettle", "tea"));
+        scan.tryEmitComplete();
+
+        assertThat(suggester.suggest("coffee", 10)).containsExactly(new Suggestion("coffee", Suggestion.Type.tag, 1));
+        assertThat(suggester.suggest("esp", 10)).extracting(Suggestion::text).containsExactly("Espresso Machine");
+        assertThat(suggester.suggest("tea", 10)).extracting(Suggestion::text).containsExactly("tea", "Tea Kettle");
+    }
+
+    private static ProductDocument product(String id, String name, String... tags) {
+        return new ProductDocument(id, name, null, 1.0, "Test", List.of(tags));
+    }
+}
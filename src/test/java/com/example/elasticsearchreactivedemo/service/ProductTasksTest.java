@@ -0,0 +1,90 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.example.elasticsearchreactivedemo.model.TaskProgress;
+import com.example.elasticsearchreactivedemo.support.ElasticsearchStubServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductTasksTest {
+
+    private final ElasticsearchStubServer stub = ElasticsearchStubServer.start(Duration.ZERO);
+    private final RestClient restClient = RestClient.builder(HttpHost.create(stub.uri())).build();
+    private final RestClientTransport transport = new RestClientTransport(restClient, new JacksonJsonpMapper());
+    private final ProductTasks tasks = new ProductTasks(
+        new ElasticsearchExecutor(new ElasticsearchClient(transport), new ElasticsearchAsyncClient(transport), restClient,
+            ElasticsearchExecutor.Mode.ASYNC, new SimpleMeterRegistry()),
+        new ObjectMapper());
+
+    private final Query lamps = Query.of(q -> q.multiMatch(m -> m.query("lamp").fields("name")));
+
+    ProductTasksTest() {
+        ReflectionTestUtils.setField(tasks, "indexName", "products");
+        ReflectionTestUtils.setField(tasks, "requestsPerSecond", -1f);
+        ReflectionTestUtils.setField(tasks, "pollInterval", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(tasks, "wait", Duration.ofSeconds(1));
+        stub.putDocument("1", "{\"name\":\"Desk lamp\",\"price\":20.0}");
+        stub.putDocument("2", "{\"name\":\"Floor lamp\",\"price\":40.0}");
+        stub.putDocument("3", "{\"name\":\"Chair\",\"price\":60.0}");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        transport.close();
+        stub.close();
+    }
+
+    @Test
+    void shouldSubmitDeleteAndReportFinalCounts() {
+        String taskId = tasks.deleteByQuery(lamps, null).block();
+
+        assertThat(tasks.hasPending()).isTrue();
+        StepVerifier.create(tasks.await(taskId))
+            .assertNext(progress -> {
+                assertThat(progress.completed()).isTrue();
+                assertThat(progress.action()).isEqualTo("indices:data/write/delete/byquery");
+                assertThat(progress.total()).isEqualTo(2);
+                assertThat(progress.deleted()).isEqualTo(2);
+                assertThat(progress.remaining()).isZero();
+                assertThat(progress.failed()).isZero();
+            })
+            .verifyComplete();
+        assertThat(tasks.hasPending()).isFalse();
+        assertThat(stub.documentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldStreamProgressUntilUpdateCompletes() {
+        String taskId = tasks.updateByQuery(lamps, Map.of("category", "Lighting"), 500f).block();
+
+        StepVerifier.create(tasks.watch(taskId))
+            .assertNext(progress -> {
+                assertThat(progress.completed()).isTrue();
+                assertThat(progress.updated()).isEqualTo(2);
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldReportUnknownTasks() {
+        StepVerifier.create(tasks.watch("stub:404").map(TaskProgress::completed))
+            .expectError(NoSuchElementException.class)
+            .verify();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class RawSearchHitsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RawSearchHits rawSearchHits = new RawSearchHits(objectMapper);
+
+    @Test
+    void shouldCopySourcesWithIdsInjected() throws Exception {
+        String response = "{\"took\":3,\"timed_out\":false,\"hits\":{\"total\":{\"value\":3},\"max_score\":1.0,\"hits\":["
+            + "{\"_index\":\"products\",\"_id\":\"1\",\"_score\":1.0,\"_source\":{\"id\":\"stale\",\"name\":\"Laptop\",\"price\":1200.99,\"tags\":[\"computer\"]}},"
+            + "{\"_source\":{\"name\":\"Phone\",\"meta\":{\"a\":[1,2]}},\"_id\":\"2\"}," // _source before _id
+            + "{\"_id\":\"3\"}]}}"; // no _source
+
+        List<Long> completed = new ArrayList<>();
+        JsonNode hits = objectMapper.readTree(join(rawSearchHits.write(entity(response), DefaultDataBufferFactory.sharedInstance,
+            (took, count) -> completed.addAll(List.of(took, (long) count))).collectList().block()));
+
+        assertThat(completed).containsExactly(3L, 3L);
+        assertThat(hits).hasSize(2);
+        assertThat(hits.get(0).toString())
+            .isEqualTo("{\"id\":\"1\",\"name\":\"Laptop\",\"description\":null,\"price\":1200.99,\"category\":null,\"tags\":[\"computer\"]}");
+        assertThat(hits.get(1).toString())
+            .isEqualTo("{\"id\":\"2\",\"name\":\"Phone\",\"description\":null,\"price\":0.0,\"category\":null,\"tags\":null}");
+    }
+
+    @Test
+    void shouldWriteTheSameJsonAsDecodedHits() throws Exception {
+        String response = "{\"hits\":{\"hits\":["
+            + "{\"_id\":\"1\",\"_source\":{\"tags\":[\"computer\"],\"price\":1200.99,\"name\":\"Laptop\"}},"
+            + "{\"_id\":\"2\",\"_source\":{\"category\":\"Electronics\",\"description\":null}}]}}";
+
+        for (ObjectMapper mapper : new ObjectMapper[] {objectMapper,
+            new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL)}) {
+            RawSearchHits hits = new RawSearchHits(mapper);
+            String raw = join(hits.write(entity(response), DefaultDataBufferFactory.sharedInstance, (took, count) -> {
+            }).collectList().block());
+
+            assertThat(raw).isEqualTo(mapper.writeValueAsString(hits.decode(entity(response)).products()));
+        }
+    }
+
+    @Test
+    void shouldWriteEmptyArrayWithoutHits() throws Exception {
+        assertThat(write("{\"hits\":{\"hits\":[]}}")).isEqualTo("[]");
+        assertThat(write("{}")).isEqualTo("[]"); // filter_path drops hits entirely when there are none
+    }
+
+    @Test
+    void shouldSplitLargeResponsesIntoChunks() throws Exception {
+        String response = IntStream.range(0, 1000)
+            .mapToObj(i -> "{\"_id\":\"" + i + "\",\"_source\":{\"name\":\"Product " + i + "\",\"description\":\"" + "x".repeat(100) + "\"}}")
+            .collect(Collectors.joining(",", "{\"hits\":{\"hits\":[", "]}}"));
+
+        List<DataBuffer> chunks = rawSearchHits.write(entity(response), DefaultDataBufferFactory.sharedInstance, (took, count) -> {
+            })
+            .collectList().block();
+
+        assertThat(chunks).hasSizeGreaterThan(10);
+        JsonNode hits = objectMapper.readTree(join(chunks));
+        assertThat(hits).hasSize(1000);
+        assertThat(hits.get(999).get("id").asText()).isEqualTo("999");
+    }
+
+    @Test
+    void shouldDecodeHitsWithIdsBound() throws Exception {
+        String response = "{\"took\":5,\"hits\":{\"hits\":["
+            + "{\"_id\":\"1\",\"_source\":{\"id\":\"stale\",\"name\":\"Laptop\",\"price\":1200.99,\"category\":\"Electronics\"}},"
+            + "{\"_source\":{\"name\":\"Phone\",\"category\":\"Electronics\"},\"_id\":\"2\"}," // _source before _id
+            + "{\"_id\":\"3\"}]}}"; // no _source
+
+        RawSearchHits.Decoded decoded = rawSearchHits.decode(entity(response));
+        List<ProductDocument> products = decoded.products();
+
+        assertThat(decoded.took()).isEqualTo(5);
+        assertThat(decoded.hits()).isEqualTo(3);
+
+        assertThat(products).extracting(ProductDocument::id, ProductDocument::name).containsExactly(
+            tuple("1", "Laptop"),
+            tuple("2", "Phone"));
+        assertThat(products.get(0).category()).isSameAs(products.get(1).category());
+        assertThat(rawSearchHits.decode(entity("{}")).products()).isEmpty();
+    }
+
+    private String write(String response) {
+        return join(rawSearchHits.write(entity(response), DefaultDataBufferFactory.sharedInstance, (took, count) -> {
+        }).collectList().block());
+    }
+
+    private static StringEntity entity(String json) {
+        return new StringEntity(json, ContentType.APPLICATION_JSON);
+    }
+
+    private static String join(List<DataBuffer> chunks) {
+        StringBuilder json = new StringBuilder();
+        chunks.forEach(chunk -> {
+            json.append(chunk.toString(StandardCharsets.UTF_8));
+            DataBufferUtils.release(chunk);
+        });
+        return json.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadHedgerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReadHedger hedger = new ReadHedger(true, 0.9, 0.5, Duration.ofMillis(1), meterRegistry);
+
+    @Test
+    void shouldNotHedgeBeforeTheDelayIsKnown() {
+        List<String> preferences = new ArrayList<>();
+
+        String result = hedger.hedge("get", preference -> {
+            preferences.add(preference);
+            return Mono.just("original").delayElement(Duration.ofMillis(20));
+        }).block();
+
+        assertThat(result).isEqualTo("original");
+        assertThat(preferences).containsExactly((String) null);
+    }
+
+    @Test
+    void shouldLetAFastHedgeWinAndCancelTheSlowOriginal() {
+        warmUp();
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        String result = hedger.hedge("get", preference -> preference == null
+            ? Mono.just("original").delayElement(Duration.ofSeconds(5)).doOnCancel(() -> cancelled.set(true))
+            : Mono.just("hedge:" + preference)).block(Duration.ofSeconds(2));
+
+        assertThat(result).startsWith("hedge:");
+        assertThat(cancelled).isTrue();
+        assertThat(meterRegistry.get("elasticsearch.hedge.won").tag("operation", "get").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldIgnoreFailedHedges() {
+        warmUp();
+
+        String result = hedger.hedge("get", preference -> preference == null
+            ? Mono.just("original").delayElement(Duration.ofMillis(100))
+            : Mono.<String>error(new RuntimeException("copy unavailable"))).block(Duration.ofSeconds(2));
+
+        assertThat(result).isEqualTo("original");
+    }
+
+    @Test
+    void shouldHedgeNoMoreThanTheBudgetAllows() {
+        warmUp(); // 64 reads earn the 10 tokens that can be saved up
+        for (int i = 0; i < 30; i++) {
+            hedger.hedge("get", preference -> preference == null
+                ? Mono.just("original").delayElement(Duration.ofMillis(20))
+                : Mono.just("hedge")).block(Duration.ofSeconds(2));
+        }
+
+        // 10 saved tokens, then one hedge per two slow reads
+        double sent = meterRegistry.get("elasticsearch.hedge.sent").tag("operation", "get").counter().count();
+        assertThat(sent).isBetween(24.0, 26.0);
+    }
+
+    // Fast reads until the delay is computed from the tracked latencies
+    private void warmUp() {
+        for (int i = 0; i < 64; i++) {
+            hedger.hedge("get", preference -> Mono.just("warm")).block();
+        }
+        assertThat(hedger.delayNanos("get")).isEqualTo(Duration.ofMillis(1).toNanos());
+    }
+}
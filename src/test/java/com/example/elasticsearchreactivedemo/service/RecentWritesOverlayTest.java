@@ -0,0 +1,111 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import co.elastic.clients.elasticsearch._types.Refresh;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentWritesOverlayTest {
+
+    private final RecentWritesOverlay overlay =
+        new RecentWritesOverlay(RecentWritesOverlay.Consistency.OVERLAY, 2, Duration.ofMinutes(1));
+
+    @Test
+    void shouldMergePendingWritesIntoSearchHits() {
+        overlay.recordWrite(product("1", "Updated Laptop"), Refresh.False);
+        overlay.recordWrite(product("3", "Gaming Laptop"), Refresh.False);
+        overlay.recordDelete("2", Refresh.False);
+
+        Flux<ProductDocument> hits = Flux.just(product("1", "Laptop"), product("2", "Old Laptop"), product("4", "Laptop Bag"));
+
+        StepVerifier.create(overlay.mergeSearch("laptop", hits).map(ProductDocument::name))
+            .expectNext("Updated Laptop", "Laptop Bag", "Gaming Laptop")
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldDropHitsWhoseUpdateNoLongerMatches() {
+        overlay.recordWrite(product("1", "Desk Lamp"), Refresh.False);
+
+        StepVerifier.create(overlay.mergeSearch("laptop", Flux.just(product("1", "Laptop"))))
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldServeLookupsAndFallBackToWaitForWhenFull() {
+        overlay.recordWrite(product("1", "Laptop"), Refresh.False);
+        overlay.recordDelete("2", Refresh.False);
+
+        assertThat(overlay.lookup("1")).hasValueSatisfying(e -> assertThat(e.doc().name()).isEqualTo("Laptop"));
+        assertThat(overlay.lookup("2")).hasValueSatisfying(e -> assertThat(e.isDelete()).isTrue());
+        assertThat(overlay.lookup("3")).isEmpty();
+        assertThat(overlay.refreshPolicy()).isEqualTo(Refresh.WaitFor);
+    }
+
+    @Test
+    void shouldKeepHeldWritesUntilReleased() {
+        RecentWritesOverlay shortLived = new RecentWritesOverlay(RecentWritesOverlay.Consistency.OVERLAY, 10, Duration.ZERO);
+        shortLived.hold("1", product("1", "Laptop"), 7);
+        shortLived.hold("2", null, 8);
+        shortLived.recordWrite(product("3", "Phone"), Refresh.False);
+
+        assertThat(shortLived.lookup("1")).isPresent();
+        assertThat(shortLived.lookup("2")).hasValueSatisfying(e -> assertThat(e.isDelete()).isTrue());
+        assertThat(shortLived.lookup("3")).isEmpty(); // expired right away
+
+        shortLived.hold("1", product("1", "Gaming Laptop"), 9);
+        shortLived.release("1", 7); // an older write was drained; the newer one stays
+        shortLived.release("2", 8);
+
+        assertThat(shortLived.lookup("1")).hasValueSatisfying(e -> assertThat(e.doc().name()).isEqualTo("Gaming Laptop"));
+        assertThat(shortLived.lookup("2")).isEmpty();
+    }
+
+    @Test
+    void shouldNotRecordWritesThatWaitedForARefresh() {
+        overlay.recordWrite(product("1", "Laptop"), Refresh.False);
+        overlay.recordWrite(product("2", "Phone"), Refresh.False);
+        assertThat(overlay.refreshPolicy()).isEqualTo(Refresh.WaitFor);
+
+        overlay.recordWrite(product("3", "Desk"), Refresh.WaitFor);
+        overlay.recordDelete("1", Refresh.WaitFor); // visible in the index, the pending write must not win over it
+
+        assertThat(overlay.lookup("1")).isEmpty();
+        assertThat(overlay.lookup("3")).isEmpty();
+        assertThat(overlay.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldPruneExpiredEntriesAsNewOnesArrive() throws InterruptedException {
+        RecentWritesOverlay shortLived = new RecentWritesOverlay(RecentWritesOverlay.Consistency.OVERLAY, 1000, Duration.ofMillis(20));
+        for (int i = 0; i < 100; i++) {
+            shortLived.recordWrite(product(String.valueOf(i), "Laptop"), Refresh.False);
+        }
+        shortLived.hold("held", product("held", "Phone"), 1);
+
+        Thread.sleep(50);
+        shortLived.recordWrite(product("new", "Desk"), Refresh.False);
+
+        assertThat(shortLived.size()).isEqualTo(2); // the new write and the held one, which never expires
+        assertThat(shortLived.lookup("held")).isPresent();
+    }
+
+    @Test
+    void shouldForceRefreshWhenDisabled() {
+        RecentWritesOverlay disabled = new RecentWritesOverlay(RecentWritesOverlay.Consistency.REFRESH, 2, Duration.ofMinutes(1));
+        disabled.recordWrite(product("1", "Laptop"), Refresh.False);
+
+        assertThat(disabled.refreshPolicy()).isEqualTo(Refresh.True);
+        assertThat(disabled.lookup("1")).isEmpty();
+    }
+
+    private static ProductDocument product(String id, String name) {
+        return new ProductDocument(id, name, "desc", 10.0, "Electronics", List.of("tag"));
+    }
+}
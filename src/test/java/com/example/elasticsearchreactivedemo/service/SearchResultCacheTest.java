@@ -0,0 +1,98 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import co.elastic.clients.elasticsearch._types.Refresh;
+import com.example.elasticsearchreactivedemo.model.ProductDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchResultCacheTest {
+
+    private final RecentWritesOverlay overlay =
+        new RecentWritesOverlay(RecentWritesOverlay.Consistency.OVERLAY, 100, Duration.ofMillis(50));
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, Flux<ProductDocument>> loader = query -> Flux.defer(() -> {
+        int load = loads.incrementAndGet();
+        return Flux.just(product("1", query + " " + load), product("2", query));
+    });
+
+    @Test
+    void shouldServeEquivalentQueriesFromOneEntry() {
+        SearchResultCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(1));
+
+        StepVerifier.create(cache.get("Gaming  Laptop ", loader).map(ProductDocument::name))
+            .expectNext("gaming laptop 1", "gaming laptop")
+            .verifyComplete();
+        StepVerifier.create(cache.get("gaming laptop", loader).map(ProductDocument::name))
+            .expectNext("gaming laptop 1", "gaming laptop")
+            .verifyComplete();
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void shouldNotServeResultsComputedBeforeAWrite() {
+        SearchResultCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(1));
+        cache.get("laptop", loader).blockLast();
+
+        cache.onWrite();
+
+        StepVerifier.create(cache.get("laptop", loader).map(ProductDocument::name).take(1))
+            .expectNext("laptop 2")
+            .verifyComplete();
+        // The next generation is cached in turn
+        cache.get("laptop", loader).blockLast();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void shouldExpireEntriesAfterTheTtl() throws InterruptedException {
+        SearchResultCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMillis(50));
+        cache.get("laptop", loader).blockLast();
+
+        Thread.sleep(100);
+
+        cache.get("laptop", loader).blockLast();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void shouldKeepResultsOnlyUntilPendingWritesAreVisible() throws InterruptedException {
+        SearchResultCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(1));
+        overlay.recordWrite(product("3", "laptop stand"), Refresh.False);
+        cache.get("laptop", loader).blockLast(); // cached for the overlay's 50ms instead of a minute
+
+        Thread.sleep(100);
+
+        cache.get("laptop", loader).blockLast();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void shouldStayWithinTheMaximumWeight() {
+        SearchResultCache cache = cache(DataSize.ofKilobytes(4), Duration.ofMinutes(1));
+        for (int i = 0; i < 100; i++) {
+            cache.get("query " + i, loader).blockLast();
+        }
+
+        long size = cache.size();
+        assertThat(size).isPositive().isLessThan(100);
+    }
+
+    private SearchResultCache cache(DataSize maximumSize, Duration ttl) {
+        return new SearchResultCache(true, maximumSize, ttl, overlay, new SimpleMeterRegistry());
+    }
+
+    private static ProductDocument product(String id, String name) {
+        return new ProductDocument(id, name, "A product for the search cache test", 1.0, "Test", List.of("test"));
+    }
+}
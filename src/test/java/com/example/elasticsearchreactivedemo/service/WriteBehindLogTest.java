@@ -0,0 +1,161 @@
+package com.example.elasticsearchreactivedemo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class WriteBehindLogTest {
+
+    private static final Duration GROUP_COMMIT = Duration.ofMillis(1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldAcknowledgeConcurrentAppendsInOrder() {
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1 << 16, GROUP_COMMIT)) {
+            List<Long> seqs = Flux.range(0, 100)
+                .flatMap(i -> log.append(WriteBehindLog.Op.PUT, "id-" + i, json("Product " + i)))
+                .collectList()
+                .block();
+
+            assertThat(seqs).doesNotHaveDuplicates().hasSize(100).allSatisfy(seq -> assertThat(seq).isBetween(0L, 99L));
+        }
+    }
+
+    @Test
+    void shouldReplayLatestWritePerIdAfterRestart() throws Exception {
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1 << 16, GROUP_COMMIT)) {
+            log.append(WriteBehindLog.Op.PUT, "1", json("Laptop")).block();
+            log.append(WriteBehindLog.Op.PUT, "2", json("Phone")).block();
+            log.append(WriteBehindLog.Op.PUT, "1", json("Gaming Laptop")).block();
+            log.append(WriteBehindLog.Op.DELETE, "2", new byte[0]).block();
+        }
+
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1 << 16, GROUP_COMMIT)) {
+            assertThat(log.replayed()).extracting(WriteBehindLog.Entry::id, WriteBehindLog.Entry::op, WriteBehindLog.Entry::seq)
+                .containsExactly(
+                    tuple("1", WriteBehindLog.Op.PUT, 2L),
+                    tuple("2", WriteBehindLog.Op.DELETE, 3L));
+            assertThat(new String(log.replayed().get(0).source(), StandardCharsets.UTF_8)).contains("Gaming Laptop");
+            // Compacted into one fresh segment; sequence numbers continue after the replayed ones
+            assertThat(segments()).hasSize(1);
+            assertThat(log.append(WriteBehindLog.Op.PUT, "3", json("Desk")).block()).isEqualTo(4L);
+        }
+    }
+
+    @Test
+    void shouldForgetWritesBeforeClear() {
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1 << 16, GROUP_COMMIT)) {
+            log.append(WriteBehindLog.Op.PUT, "1", json("Laptop")).block();
+            log.append(WriteBehindLog.Op.CLEAR, "", new byte[0]).block();
+            log.append(WriteBehindLog.Op.PUT, "2", json("Phone")).block();
+        }
+
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1 << 16, GROUP_COMMIT)) {
+            assertThat(log.replayed()).extracting(WriteBehindLog.Entry::id).containsExactly("2");
+        }
+    }
+
+    @Test
+    void shouldNotReplayDrainedWrites() {
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1 << 16, GROUP_COMMIT)) {
+            long laptop = log.append(WriteBehindLog.Op.PUT, "1", json("Laptop")).block();
+            long phone = log.append(WriteBehindLog.Op.DELETE, "2", new byte[0]).block();
+            log.drained("1", laptop).block();
+            log.drained("2", phone).block();
+        }
+
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1 << 16, GROUP_COMMIT)) {
+            assertThat(log.replayed()).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldReplayWritesNewerThanTheDrainedOne() {
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1 << 16, GROUP_COMMIT)) {
+            long first = log.append(WriteBehindLog.Op.PUT, "1", json("Laptop")).block();
+            log.append(WriteBehindLog.Op.PUT, "1", json("Gaming Laptop")).block();
+            log.drained("1", first).block();
+        }
+
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1 << 16, GROUP_COMMIT)) {
+            assertThat(log.replayed()).singleElement()
+                .satisfies(entry -> assertThat(new String(entry.source(), StandardCharsets.UTF_8)).contains("Gaming Laptop"));
+        }
+    }
+
+    @Test
+    void shouldStopReplayAtTornWrite() throws Exception {
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1 << 16, GROUP_COMMIT)) {
+            log.append(WriteBehindLog.Op.PUT, "1", json("Laptop")).block();
+            log.append(WriteBehindLog.Op.PUT, "2", json("Phone")).block();
+        }
+        Path segment = segments().get(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            long secondRecordEnd = firstZeroRun(Files.readAllBytes(segment));
+            file.seek(secondRecordEnd - 1); // flip the last byte of the second record
+            int last = file.read();
+            file.seek(secondRecordEnd - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1 << 16, GROUP_COMMIT)) {
+            assertThat(log.replayed()).extracting(WriteBehindLog.Entry::id).containsExactly("1");
+        }
+    }
+
+    @Test
+    void shouldRollSegmentsAndDeleteDrainedOnes() throws Exception {
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1024, GROUP_COMMIT)) {
+            long last = 0;
+            for (int i = 0; i < 50; i++) {
+                last = log.append(WriteBehindLog.Op.PUT, "id-" + i, json("Product " + i)).block();
+            }
+            assertThat(segments()).hasSizeGreaterThan(2);
+
+            log.truncate(last); // only the newest write is still pending
+            assertThat(segments()).hasSize(1);
+            assertThat(log.segmentCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void shouldRejectWritesLargerThanASegment() {
+        try (WriteBehindLog log = WriteBehindLog.open(directory, 1024, GROUP_COMMIT)) {
+            assertThatThrownBy(() -> log.append(WriteBehindLog.Op.PUT, "1", new byte[2048]).block())
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    // Records are followed by the zero-filled rest of the segment
+    private static long firstZeroRun(byte[] bytes) {
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] == 0) {
+            end--;
+        }
+        return end;
+    }
+
+    private static byte[] json(String name) {
+        return ("{\"name\":\"" + name + "\",\"price\":10.0}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,474 @@
+package com.example.elasticsearchreactivedemo.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+// Minimal in-process stand-in for a single-index Elasticsearch node, good enough for the Java client. Speaks _doc,
+// _mget, _search (multi_match/match_all, PIT with slices and search_after), _bulk, _update, _delete_by_query and
+// _update_by_query (also as tasks), _tasks, _refresh and _pit, plus index templates, index creation (with aliases)
+// and _mapping for the bootstrap. Responses are delayed by a configurable latency without holding a thread, so the
+// stub itself does not become the bottleneck when load testing at high concurrency.
+public class ElasticsearchStubServer implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final DisposableServer server;
+    // Sorted so PIT scans can page with search_after over a stable order
+    private final ConcurrentSkipListMap<String, ObjectNode> documents = new ConcurrentSkipListMap<>();
+    private final Map<String, List<String>> pointsInTime = new ConcurrentHashMap<>();
+    private final Map<String, ObjectNode> templates = new ConcurrentHashMap<>();
+    // Index name -> mappings; documents are shared by all indices
+    private final Map<String, JsonNode> indices = new ConcurrentHashMap<>();
+    // Alias -> index, as given when the index was created
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
+    private final AtomicLong seqNo = new AtomicLong();
+    // Task ID -> _tasks response; by-query tasks complete before they are returned
+    private final Map<String, ObjectNode> tasks = new ConcurrentHashMap<>();
+    private final AtomicLong taskIds = new AtomicLong();
+    // Sequence number of each document's last write, for if_seq_no
+    private final Map<String, Long> seqNos = new ConcurrentHashMap<>();
+    private volatile Duration latency;
+
+    private ElasticsearchStubServer(Duration latency) {
+        this.latency = latency;
+        this.server = HttpServer.create()
+            .host("127.0.0.1")
+            .port(0)
+            .compress(true) // gzip responses when the client accepts them
+            .handle(this::handle)
+            .bindNow();
+    }
+
+    public static ElasticsearchStubServer start(Duration latency) {
+        return new ElasticsearchStubServer(latency);
+    }
+
+    public String uri() {
+        return "http://127.0.0.1:" + server.port();
+    }
+
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    public void putDocument(String id, String sourceJson) {
+        documents.put(id, (ObjectNode) parse(sourceJson));
+    }
+
+    public int documentCount() {
+        return documents.size();
+    }
+
+    private Mono<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        boolean gzip = "gzip".equalsIgnoreCase(request.requestHeaders().get("Content-Encoding"));
+        return request.receive().aggregate().asByteArray()
+            .map(bytes -> gzip ? gunzip(bytes) : new String(bytes, StandardCharsets.UTF_8))
+            .defaultIfEmpty("")
+            .map(body -> {
+                try {
+                    Map<String, List<String>> params = new QueryStringDecoder(request.uri()).parameters();
+                    return route(request.method(), request.fullPath(), params, body);
+                } catch (RuntimeException e) {
+                    return error(400, "parse_exception", e.getMessage());
+                }
+            })
+            .delayElement(latency)
+            .flatMap(reply -> response.status(reply.status())
+                // The Java client refuses to talk to anything that does not identify as Elasticsearch
+                .header("X-Elastic-Product", "Elasticsearch")
+                .header("Content-Type", "application/json")
+                .sendString(Mono.just(reply.json()))
+                .then());
+    }
+
+    private Reply route(HttpMethod method, String fullPath, Map<String, List<String>> params, String body) {
+        String[] path = fullPath.substring(1).split("/");
+        String last = path[path.length - 1];
+        if (path.length == 3 && "_doc".equals(path[1])) {
+            return document(method, path[0], path[2], body);
+        }
+        if (path.length == 3 && "_update".equals(path[1])) {
+            return update(path[0], path[2], params, parse(body));
+        }
+        if (path.length == 2 && "_tasks".equals(path[0])) {
+            return task(path[1]);
+        }
+        if (path.length == 2 && "_index_template".equals(path[0])) {
+            return indexTemplate(method, path[1], body);
+        }
+        if (path.length == 1 && !last.startsWith("_")) {
+            return index(method, last, body);
+        }
+        return switch (last) {
+            case "_search" -> search(path.length > 1 ? path[0] : "products", parse(body));
+            case "_mget" -> multiGet(path[0], parse(body));
+            case "_bulk" -> bulk(path.length > 1 ? path[0] : null, body);
+            case "_delete_by_query" -> byQuery("indices:data/write/delete/byquery", params, deleteByQuery(parse(body)));
+            case "_update_by_query" -> byQuery("indices:data/write/update/byquery", params, updateByQuery(parse(body)));
+            case "_refresh" -> ok(shards());
+            case "_mapping" -> mapping(path[0]);
+            case "_pit" -> HttpMethod.DELETE.equals(method) ? closePointInTime(parse(body)) : openPointInTime();
+            default -> error(404, "stub_unsupported", method + " " + fullPath);
+        };
+    }
+
+    private Reply document(HttpMethod method, String index, String id, String body) {
+        if (HttpMethod.GET.equals(method)) {
+            ObjectNode found = getResult(index, id);
+            return new Reply(found.get("found").asBoolean() ? 200 : 404, found.toString());
+        }
+        if (HttpMethod.PUT.equals(method) || HttpMethod.POST.equals(method)) {
+            boolean created = documents.put(id, (ObjectNode) parse(body)) == null;
+            return new Reply(created ? 201 : 200, writeResult(index, id, created ? "created" : "updated").toString());
+        }
+        if (HttpMethod.DELETE.equals(method)) {
+            boolean removed = documents.remove(id) != null;
+            return new Reply(removed ? 200 : 404, writeResult(index, id, removed ? "deleted" : "not_found").toString());
+        }
+        return error(405, "method_not_allowed", method.name());
+    }
+
+    // Partial document merge, with if_seq_no checks; retry_on_conflict is irrelevant since writes never race here
+    private Reply update(String index, String id, Map<String, List<String>> params, JsonNode body) {
+        ObjectNode source = documents.get(id);
+        if (source == null) {
+            return error(404, "document_missing_exception", "[" + id + "]: document missing");
+        }
+        List<String> ifSeqNo = params.get("if_seq_no");
+        if (ifSeqNo != null && Long.parseLong(ifSeqNo.get(0)) != seqNos.getOrDefault(id, 0L)) {
+            return error(409, "version_conflict_engine_exception", "[" + id + "]: version conflict");
+        }
+        ObjectNode result = merge(index, id, source, body.path("doc"));
+        return ok(result);
+    }
+
+    private ObjectNode merge(String index, String id, ObjectNode source, JsonNode doc) {
+        ObjectNode merged = source.deepCopy();
+        merged.setAll((ObjectNode) doc);
+        documents.put(id, merged);
+        ObjectNode result = writeResult(index, id, "updated");
+        result.putObject("get").put("found", true).put("_seq_no", result.get("_seq_no").asLong())
+            .put("_primary_term", 1).set("_source", merged);
+        return result;
+    }
+
+    private ObjectNode getResult(String index, String id) {
+        ObjectNode source = documents.get(id);
+        ObjectNode result = MAPPER.createObjectNode().put("_index", index).put("_id", id);
+        if (source == null) {
+            return result.put("found", false);
+        }
+        result.put("_version", 1).put("_seq_no", seqNos.getOrDefault(id, 0L)).put("_primary_term", 1).put("found", true);
+        result.set("_source", source);
+        return result;
+    }
+
+    private Reply multiGet(String index, JsonNode body) {
+        ObjectNode response = MAPPER.createObjectNode();
+        ArrayNode docs = response.putArray("docs");
+        body.path("ids").forEach(id -> docs.add(getResult(index, id.asText())));
+        body.path("docs").forEach(doc -> docs.add(getResult(doc.path("_index").asText(index), doc.path("_id").asText())));
+        return ok(response);
+    }
+
+    private Reply search(String index, JsonNode body) {
+        int size = body.path("size").asInt(10);
+        JsonNode pit = body.path("pit");
+        ObjectNode response = MAPPER.createObjectNode().put("took", 1).put("timed_out", false);
+        response.set("_shards", shards().get("_shards"));
+
+        if (pit.isObject()) {
+            // Scan of the snapshot taken when the PIT was opened; the sort value is the position in it
+            List<String> snapshot = pointsInTime.getOrDefault(pit.path("id").asText(), List.of());
+            int sliceId = body.path("slice").path("id").asInt(0);
+            int sliceMax = body.path("slice").path("max").asInt(1);
+            long after = body.path("search_after").path(0).asLong(-1);
+            ArrayNode hits = hitsArray(response, -1);
+            for (int i = (int) after + 1; i < snapshot.size() && hits.size() < size; i++) {
+                String id = snapshot.get(i);
+                ObjectNode source = documents.get(id);
+                if (source != null && Math.floorMod(id.hashCode(), sliceMax) == sliceId) {
+                    hit(hits, index, id, source).putArray("sort").add(i);
+                }
+            }
+            response.put("pit_id", pit.path("id").asText());
+            return ok(response);
+        }
+
+        JsonNode multiMatch = body.path("query").path("multi_match");
+        List<String> terms = multiMatch.isObject() ? tokenize(multiMatch.path("query").asText()) : List.of();
+        List<Map.Entry<String, ObjectNode>> matches = new ArrayList<>();
+        documents.forEach((id, source) -> {
+            if (terms.isEmpty() || matches(source, terms)) {
+                matches.add(Map.entry(id, source));
+            }
+        });
+        ArrayNode hits = hitsArray(response, matches.size());
+        matches.stream().limit(size).forEach(match -> hit(hits, index, match.getKey(), match.getValue()));
+        return ok(response);
+    }
+
+    private static ArrayNode hitsArray(ObjectNode response, int total) {
+        ObjectNode hits = response.putObject("hits");
+        if (total >= 0) {
+            hits.putObject("total").put("value", total).put("relation", "eq");
+        }
+        hits.put("max_score", 1.0);
+        return hits.putArray("hits");
+    }
+
+    private static ObjectNode hit(ArrayNode hits, String index, String id, ObjectNode source) {
+        ObjectNode hit = hits.addObject().put("_index", index).put("_id", id).put("_score", 1.0);
+        hit.set("_source", source);
+        return hit;
+    }
+
+    private static boolean matches(ObjectNode source, List<String> terms) {
+        String text = (source.path("name").asText() + " " + source.path("description").asText() + " "
+            + source.path("category").asText() + " " + source.path("tags").toString()).toLowerCase(Locale.ROOT);
+        return terms.stream().anyMatch(text::contains);
+    }
+
+    private static List<String> tokenize(String query) {
+        return Arrays.stream(query.toLowerCase(Locale.ROOT).split("\\W+")).filter(t -> !t.isEmpty()).toList();
+    }
+
+    private Reply bulk(String defaultIndex, String body) {
+        ObjectNode response = MAPPER.createObjectNode().put("took", 1).put("errors", false);
+        ArrayNode items = response.putArray("items");
+        String[] lines = body.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].isBlank()) {
+                continue;
+            }
+            JsonNode action = parse(lines[i]);
+            String type = action.fieldNames().next();
+            JsonNode meta = action.get(type);
+            String index = meta.path("_index").asText(defaultIndex);
+            String id = meta.has("_id") ? meta.get("_id").asText() : UUID.randomUUID().toString();
+            ObjectNode result;
+            if ("delete".equals(type)) {
+                boolean removed = documents.remove(id) != null;
+                result = writeResult(index, id, removed ? "deleted" : "not_found").put("status", removed ? 200 : 404);
+            } else if ("update".equals(type)) {
+                JsonNode doc = parse(lines[++i]).path("doc");
+                ObjectNode source = documents.get(id);
+                if (source == null) {
+                    response.put("errors", true);
+                    result = MAPPER.createObjectNode().put("_index", index).put("_id", id).put("status", 404);
+                    result.putObject("error").put("type", "document_missing_exception").put("reason", "[" + id + "]: document missing");
+                } else {
+                    result = merge(index, id, source, doc).put("status", 200);
+                }
+            } else {
+                boolean created = documents.put(id, (ObjectNode) parse(lines[++i])) == null;
+                result = writeResult(index, id, created ? "created" : "updated").put("status", created ? 201 : 200);
+            }
+            items.addObject().set(type, result);
+        }
+        return ok(response);
+    }
+
+    private ObjectNode deleteByQuery(JsonNode body) {
+        List<String> terms = queryTerms(body);
+        long deleted = 0;
+        for (Map.Entry<String, ObjectNode> entry : documents.entrySet()) {
+            if ((terms.isEmpty() || matches(entry.getValue(), terms)) && documents.remove(entry.getKey()) != null) {
+                deleted++;
+            }
+        }
+        return byQueryResponse(deleted, 0, deleted);
+    }
+
+    // Supports the one script the service sends, which copies params.doc into the source
+    private ObjectNode updateByQuery(JsonNode body) {
+        List<String> terms = queryTerms(body);
+        JsonNode doc = body.path("script").path("params").path("doc");
+        long updated = 0;
+        for (Map.Entry<String, ObjectNode> entry : documents.entrySet()) {
+            if (terms.isEmpty() || matches(entry.getValue(), terms)) {
+                merge("products", entry.getKey(), entry.getValue(), doc);
+                updated++;
+            }
+        }
+        return byQueryResponse(updated, updated, 0);
+    }
+
+    private static List<String> queryTerms(JsonNode body) {
+        JsonNode multiMatch = body.path("query").path("multi_match");
+        return multiMatch.isObject() ? tokenize(multiMatch.path("query").asText()) : List.of();
+    }
+
+    private static ObjectNode byQueryResponse(long total, long updated, long deleted) {
+        ObjectNode response = MAPPER.createObjectNode()
+            .put("took", 1).put("timed_out", false).put("total", total).put("updated", updated).put("deleted", deleted)
+            .put("batches", 1).put("version_conflicts", 0).put("noops", 0)
+            .put("throttled_millis", 0).put("requests_per_second", -1.0).put("throttled_until_millis", 0);
+        response.putObject("retries").put("bulk", 0).put("search", 0);
+        response.putArray("failures");
+        return response;
+    }
+
+    // The work is done before answering either way; wait_for_completion=false only changes what is returned
+    private Reply byQuery(String action, Map<String, List<String>> params, ObjectNode response) {
+        if (!List.of("false").equals(params.get("wait_for_completion"))) {
+            return ok(response);
+        }
+        long id = taskIds.incrementAndGet();
+        ObjectNode task = MAPPER.createObjectNode().put("completed", true);
+        task.putObject("task").put("node", "stub").put("id", id).put("type", "transport").put("action", action)
+            .put("start_time_in_millis", System.currentTimeMillis()).put("running_time_in_nanos", 1)
+            .put("cancellable", true).putObject("headers");
+        task.set("response", response);
+        tasks.put("stub:" + id, task);
+        return ok(MAPPER.createObjectNode().put("task", "stub:" + id));
+    }
+
+    private Reply task(String id) {
+        ObjectNode task = tasks.get(id);
+        return task != null ? ok(task) : error(404, "resource_not_found_exception", "task [" + id + "] isn't running and hasn't stored its results");
+    }
+
+    private Reply indexTemplate(HttpMethod method, String name, String body) {
+        if (HttpMethod.PUT.equals(method) || HttpMethod.POST.equals(method)) {
+            ObjectNode template = (ObjectNode) parse(body);
+            if (!template.has("composed_of")) {
+                template.putArray("composed_of"); // always present in Elasticsearch's responses
+            }
+            templates.put(name, template);
+            return ok(MAPPER.createObjectNode().put("acknowledged", true));
+        }
+        ObjectNode template = templates.get(name);
+        if (template == null) {
+            return error(404, "resource_not_found_exception", "index template matching [" + name + "] not found");
+        }
+        ObjectNode response = MAPPER.createObjectNode();
+        response.putArray("index_templates").addObject().put("name", name).set("index_template", template);
+        return ok(response);
+    }
+
+    private Reply index(HttpMethod method, String name, String body) {
+        if (HttpMethod.PUT.equals(method)) {
+            // Mappings come from the first template whose pattern matches, which is all the bootstrap installs
+            JsonNode mappings = templates.values().stream()
+                .filter(t -> matchesPattern(t.path("index_patterns"), name))
+                .map(t -> t.path("template").path("mappings"))
+                .findFirst()
+                .orElse(MAPPER.createObjectNode());
+            if (indices.putIfAbsent(name, mappings) != null) {
+                return error(400, "resource_already_exists_exception", "index [" + name + "] already exists");
+            }
+            if (body != null && !body.isBlank()) {
+                parse(body).path("aliases").fieldNames().forEachRemaining(alias -> aliases.put(alias, name));
+            }
+            return ok(MAPPER.createObjectNode().put("acknowledged", true).put("shards_acknowledged", true).put("index", name));
+        }
+        return indices.containsKey(resolve(name)) ? ok(MAPPER.createObjectNode()) : error(404, "index_not_found_exception", name);
+    }
+
+    private static boolean matchesPattern(JsonNode patterns, String name) {
+        for (JsonNode pattern : patterns) {
+            String p = pattern.asText();
+            if (p.endsWith("*") ? name.startsWith(p.substring(0, p.length() - 1)) : name.equals(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String resolve(String name) {
+        return aliases.getOrDefault(name, name);
+    }
+
+    private Reply mapping(String name) {
+        String index = resolve(name);
+        ObjectNode response = MAPPER.createObjectNode();
+        response.putObject(index).set("mappings", indices.getOrDefault(index, MAPPER.createObjectNode()));
+        return ok(response);
+    }
+
+    private Reply openPointInTime() {
+        String id = UUID.randomUUID().toString();
+        pointsInTime.put(id, List.copyOf(documents.keySet()));
+        return ok(MAPPER.createObjectNode().put("id", id));
+    }
+
+    private Reply closePointInTime(JsonNode body) {
+        boolean freed = pointsInTime.remove(body.path("id").asText()) != null;
+        return ok(MAPPER.createObjectNode().put("succeeded", true).put("num_freed", freed ? 1 : 0));
+    }
+
+    private ObjectNode writeResult(String index, String id, String result) {
+        ObjectNode node = MAPPER.createObjectNode()
+            .put("_index", index).put("_id", id).put("_version", 1).put("result", result);
+        node.set("_shards", shards().get("_shards"));
+        long next = seqNo.incrementAndGet();
+        seqNos.put(id, next);
+        return node.put("_seq_no", next).put("_primary_term", 1);
+    }
+
+    private static ObjectNode shards() {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.putObject("_shards").put("total", 1).put("successful", 1).put("failed", 0);
+        return node;
+    }
+
+    private static Reply ok(JsonNode json) {
+        return new Reply(200, json.toString());
+    }
+
+    private static Reply error(int status, String type, String reason) {
+        ObjectNode node = MAPPER.createObjectNode().put("status", status);
+        node.putObject("error").put("type", type).put("reason", reason);
+        return new Reply(status, node.toString());
+    }
+
+    private static JsonNode parse(String json) {
+        try {
+            return json.isBlank() ? MAPPER.createObjectNode() : MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private static String gunzip(byte[] bytes) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record Reply(int status, String json) {
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}